@@ -4,6 +4,7 @@ module org.example.webbrowser {
     requires javafx.web;
     requires java.desktop;
     requires java.compiler;
+    requires java.net.http;
     requires org.jsoup;
     requires jdk.httpserver;
     requires jdk.jsobject;
@@ -18,4 +19,6 @@ module org.example.webbrowser {
     opens org.example.webbrowser.factory_template to javafx.fxml;
     exports org.example.webbrowser.visitor;
     opens org.example.webbrowser.visitor to javafx.fxml;
+    exports org.example.webbrowser.fetch;
+    exports org.example.webbrowser.cache;
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package org.example.webbrowser;
 
-import java.util.regex.Pattern;
-
 public class AddressBar {
     private String url;
     private String protocol;
@@ -28,9 +26,6 @@ public class AddressBar {
             return false;
         }
 
-        String urlPattern = "^(https?://)?(www\\.)?[a-zA-Z0-9-]+(\\.[a-zA-Z]{2,})+(/.*)?$";
-        Pattern pattern = Pattern.compile(urlPattern);
-
-        return pattern.matcher(url).matches();
+        return RegexPatterns.TYPED_URL.matcher(url).matches();
     }
 }
\ No newline at end of file
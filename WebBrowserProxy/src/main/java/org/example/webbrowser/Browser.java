@@ -1,5 +1,8 @@
 package org.example.webbrowser;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * For now Browser loads resources but prints them with system.out.println
  * In future this will and should be changed
@@ -41,6 +44,76 @@ public class Browser {
         }
     }
 
+    /**
+     * Same as loadPage(), but the request runs on a background thread
+     *
+     * @param url Page URL
+     * @param callbackExecutor Where the new page is installed and the future completes, e.g. Platform::runLater
+     * @return Future completed with the response, status 400 for an invalid URL
+     */
+    public CompletableFuture<HTTPResponse> loadPageAsync(String url, Executor callbackExecutor) {
+        if (!addressBar.validateURL(url)) {
+            handleError(400);
+            HTTPResponse response = new HTTPResponse();
+            response.setStatusCode(400);
+            return CompletableFuture.completedFuture(response);
+        }
+        return loadPageAsync(new HTTPRequest(url, "GET"), callbackExecutor);
+    }
+
+    /**
+     * Sends a prepared request (cancellation token, progress listener) on a background thread.
+     * The page is parsed on that thread too, callbackExecutor only gets the finished page.
+     *
+     * @param request Request to send
+     * @param callbackExecutor Where the new page is installed and the future completes, e.g. Platform::runLater
+     * @return Future completed with the response once getCurrentPage() returns its page
+     */
+    public CompletableFuture<HTTPResponse> loadPageAsync(HTTPRequest request, Executor callbackExecutor) {
+        CompletableFuture<HTTPResponse> result = new CompletableFuture<>();
+        // Runnable::run keeps the parse on the page loader thread
+        request.sendAsync(Runnable::run).whenComplete((response, error) -> {
+            WebPage page = null;
+            Throwable failure = error;
+            if (failure == null && response.getStatusCode() == 200) {
+                try {
+                    page = new WebPage();
+                    page.setRawHTML(response.getBody());
+                    page.parseHTML();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            WebPage parsed = page;
+            Throwable parseOrSendError = failure;
+            callbackExecutor.execute(() -> {
+                if (parseOrSendError != null) {
+                    result.completeExceptionally(parseOrSendError);
+                } else if (response.getStatusCode() != 200) {
+                    handleError(response.getStatusCode());
+                    result.complete(response);
+                } else {
+                    if (!request.getCancellationToken().isCancelled()) {
+                        // A navigation that was replaced meanwhile does not become the current page
+                        showPage(parsed);
+                    }
+                    result.complete(response);
+                }
+            });
+        });
+        return result;
+    }
+
+    private void showPage(WebPage page) {
+        if (currentPage != null) {
+            // Files of the page being left are not needed anymore
+            currentPage.cancelResourceLoading();
+        }
+        currentPage = page;
+        // Runs on the callback executor (often the FX thread), so resource loading is not waited for
+        currentPage.loadResourcesAsync();
+    }
+
     public void handleError(Integer errorCode) {
         switch (errorCode) {
             case 400:
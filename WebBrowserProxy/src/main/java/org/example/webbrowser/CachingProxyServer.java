@@ -0,0 +1,602 @@
+package org.example.webbrowser;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.webbrowser.cache.BlobStore;
+import org.example.webbrowser.cache.CacheEntry;
+import org.example.webbrowser.cache.CacheIndex;
+import org.example.webbrowser.cache.CachePolicy;
+import org.example.webbrowser.cache.CacheServer;
+import org.example.webbrowser.cache.PageManifest;
+import org.example.webbrowser.fetch.CancellationToken;
+import org.example.webbrowser.fetch.DecodedBody;
+import org.example.webbrowser.fetch.HttpClientPool;
+import org.example.webbrowser.fetch.SingleFlight;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP/1.1 forward proxy that shares the browser cache with other machines on the LAN
+ *
+ * Browsers send absolute-form requests ("GET http://host/path HTTP/1.1"). GET and HEAD
+ * are answered from the same cache index and blob store as WebPageFetcher: fresh entries
+ * without a request, stale ones after revalidation, misses are downloaded once and
+ * stored. Concurrent misses of one URL wait for a single download. Everything that
+ * cannot be shared (other methods, credentials, cookies, private responses) is
+ * passed through to the origin.
+ *
+ * Pages and stylesheets the browser saved for itself are rewritten to cache server
+ * paths, so only entries holding the original bytes are served to clients.
+ *
+ * A GET of "/" on the proxy itself shows its hit / miss counters.
+ *
+ * Settings (system properties):
+ * -Dwebbrowser.proxy.port=N      start the proxy on this port (not started without it)
+ * -Dwebbrowser.proxy.bind=ADDR   address to listen on (default: all interfaces)
+ * -Dwebbrowser.proxy.threads=N   connections handled at the same time (default 64)
+ * -Dwebbrowser.proxy.allowAll=true  also accept clients outside private networks
+ */
+public class CachingProxyServer {
+
+    private static final int DEFAULT_THREADS = 64;
+
+    /**
+     * Marks requests this proxy sent, a request coming back with it would loop
+     */
+    private static final String VIA = "1.1 webbrowser-proxy";
+
+    private static final long INDEX_SAVE_INTERVAL_SECONDS = 5;
+
+    /**
+     * Headers that belong to one connection and are never forwarded
+     */
+    private static final Set<String> HOP_BY_HOP = Set.of("connection", "keep-alive", "proxy-connection",
+            "proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade");
+
+    /**
+     * Request headers the JDK client sets itself or refuses
+     */
+    private static final Set<String> NOT_FORWARDED = Set.of("host", "content-length", "expect",
+            "accept-encoding", "via");
+
+    private static CachingProxyServer shared;
+
+    private final CacheIndex index;
+    private final HttpClientPool httpPool;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService maintenance;
+    private final boolean allowAll;
+
+    /**
+     * Downloads in progress by normalized URL, later requests for the same URL wait for them
+     */
+    private final SingleFlight<CacheEntry> downloads = new SingleFlight<>();
+    private final AtomicBoolean indexDirty = new AtomicBoolean();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong passedThrough = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesFromCache = new AtomicLong();
+    private final AtomicLong bytesFromOrigin = new AtomicLong();
+
+    /**
+     * @param index Cache to serve from and store into
+     * @param address Address and port to listen on
+     * @param threads Connections handled at the same time
+     * @param allowAll false to accept only clients from loopback and private networks
+     * @throws IOException if the port cannot be bound
+     */
+    public CachingProxyServer(CacheIndex index, InetSocketAddress address, int threads, boolean allowAll) throws IOException {
+        this.index = index;
+        this.httpPool = HttpClientPool.shared();
+        this.allowAll = allowAll;
+        this.server = HttpServer.create(address, 0);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "lan-proxy-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lan-proxy-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts the shared proxy on the default cache if -Dwebbrowser.proxy.port is set
+     *
+     * @return Running proxy, or null if no port is configured
+     * @throws IOException if the port cannot be bound
+     */
+    public static synchronized CachingProxyServer startFromProperties() throws IOException {
+        Integer port = Integer.getInteger("webbrowser.proxy.port");
+        if (port == null) {
+            return null;
+        }
+        if (shared == null) {
+            String bind = System.getProperty("webbrowser.proxy.bind");
+            InetSocketAddress address = bind != null ? new InetSocketAddress(bind, port) : new InetSocketAddress(port);
+            CachingProxyServer proxy = new CachingProxyServer(CacheIndex.shared(), address,
+                    Integer.getInteger("webbrowser.proxy.threads", DEFAULT_THREADS),
+                    Boolean.getBoolean("webbrowser.proxy.allowAll"));
+            proxy.start();
+            shared = proxy;
+        }
+        return shared;
+    }
+
+    /**
+     * Stops the shared proxy if it was started
+     */
+    public static synchronized void stopShared() {
+        if (shared != null) {
+            shared.stop();
+            shared = null;
+        }
+    }
+
+    public void start() {
+        server.start();
+        maintenance.scheduleWithFixedDelay(this::saveIndexIfDirty,
+                INDEX_SAVE_INTERVAL_SECONDS, INDEX_SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        System.out.println("[LanProxy] Listening on " + server.getAddress() + ", cache " + index.getRoot());
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdownNow();
+        maintenance.shutdownNow();
+        saveIndexIfDirty();
+        printReport();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) {
+        requests.incrementAndGet();
+        try {
+            if (!isAllowed(exchange.getRemoteAddress().getAddress())) {
+                sendText(exchange, 403, "Proxy only serves the local network\n");
+                return;
+            }
+            if (isLooping(exchange.getRequestHeaders())) {
+                sendText(exchange, 508, "Request looped back to the proxy\n");
+                return;
+            }
+
+            String method = exchange.getRequestMethod();
+            URI uri = exchange.getRequestURI();
+            if ("CONNECT".equals(method)) {
+                // HttpServer gives no access to the socket, so there is nothing to tunnel through
+                sendText(exchange, 501, "HTTPS tunnelling is not supported, use this proxy for http:// only\n");
+                return;
+            }
+            if (uri.getScheme() == null) {
+                // Origin-form request: the proxy itself was asked for a page
+                sendText(exchange, "/".equals(uri.getPath()) ? 200 : 404, getReport());
+                return;
+            }
+            if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+                sendText(exchange, 400, "Unsupported scheme: " + uri.getScheme() + "\n");
+                return;
+            }
+
+            if (isShareable(method, exchange.getRequestHeaders())) {
+                serveShared(exchange, uri.toString());
+            } else {
+                passThrough(exchange, uri.toString());
+            }
+        } catch (IOException | RuntimeException e) {
+            errors.incrementAndGet();
+            System.err.println("[LanProxy] " + exchange.getRequestMethod() + " " + exchange.getRequestURI() +
+                    " failed: " + e.getMessage());
+            sendError(exchange, e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answers GET / HEAD from the cache, downloading and storing the resource if needed
+     */
+    private void serveShared(HttpExchange exchange, String url) throws IOException {
+        String key = CacheIndex.normalizeUrl(url);
+        Headers requestHeaders = exchange.getRequestHeaders();
+        CacheEntry cached = index.get(key);
+        if (cached != null && !isOriginalCopy(cached)) {
+            // Rewritten for the browser itself, clients get the page from the origin
+            passThrough(exchange, url);
+            return;
+        }
+
+        if (cached != null && !wantsRevalidation(requestHeaders)) {
+            CachePolicy.Freshness freshness = CachePolicy.getFreshness(cached, System.currentTimeMillis());
+            if (freshness == CachePolicy.Freshness.STALE_WHILE_REVALIDATE) {
+                CacheEntry stale = cached;
+                maintenance.execute(() -> refreshQuietly(url, key, stale));
+            }
+            if (freshness != CachePolicy.Freshness.STALE) {
+                hits.incrementAndGet();
+                send(exchange, cached);
+                return;
+            }
+        }
+
+        if (cached == null && requestHeaders.containsKey("Range")) {
+            // Part of something not cached (media seeking), not worth downloading all of it first
+            passThrough(exchange, url);
+            return;
+        }
+
+        // Concurrent misses of one URL wait for a single download
+        boolean[] downloaded = {false};
+        CacheEntry entry = downloads.execute(key, () -> {
+            downloaded[0] = true;
+            return fetch(exchange, url, key, cached);
+        }, CancellationToken.NONE);
+        if (!downloaded[0]) {
+            coalesced.incrementAndGet();
+        }
+
+        if (exchange.getResponseCode() != -1) {
+            // Not storable, the response already went straight to this client
+            return;
+        }
+        if (entry != null) {
+            send(exchange, entry);
+        } else {
+            passThrough(exchange, url);
+        }
+    }
+
+    /**
+     * Downloads (or revalidates) a resource for the first of the waiting clients.
+     * A storable response is stored and returned for everybody to be sent from the cache,
+     * anything else goes straight to this client.
+     *
+     * @param client Client to answer, or null for a background refresh
+     * @return Stored or revalidated entry, null if the response was not stored
+     */
+    private CacheEntry fetch(HttpExchange client, String url, String key, CacheEntry cached) throws IOException {
+        HttpRequest.Builder builder = httpPool.newRequest(url).header("Via", VIA);
+        if (client != null) {
+            copyRequestHeaders(client.getRequestHeaders(), builder, Set.of("if-none-match", "if-modified-since",
+                    "if-range", "range", "cache-control", "pragma"));
+        }
+        if (cached != null && cached.getEtag() != null) {
+            builder.header("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            builder.header("If-Modified-Since", cached.getLastModified());
+        }
+
+        HttpRequest request = builder.GET().build();
+        HttpResponse<InputStream> response = httpPool.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            long now = System.currentTimeMillis();
+            if (response.statusCode() == 304 && cached != null) {
+                HttpHeaders headers = response.headers();
+                if (headers.firstValue("Cache-Control").isPresent() || headers.firstValue("Expires").isPresent()) {
+                    CachePolicy.apply(cached, headers, now);
+                }
+                cached.setFetchTime(now);
+                indexDirty.set(true);
+                revalidated.incrementAndGet();
+                return cached;
+            }
+
+            boolean redirected = !response.uri().equals(request.uri());
+            String storeKey = redirected ? CacheIndex.normalizeUrl(response.uri().toString()) : key;
+            CacheEntry stored = isStorable(response, storeKey) ? store(storeKey, response, now) : null;
+            if (stored != null) {
+                misses.incrementAndGet();
+                bytesFromOrigin.addAndGet(stored.getWireSize());
+            }
+
+            if (redirected) {
+                // The client follows it and gets the stored copy under its own URL
+                if (client != null) {
+                    client.getResponseHeaders().set("Location", response.uri().toString());
+                    client.getResponseHeaders().set("Via", VIA);
+                    client.sendResponseHeaders(302, -1);
+                }
+                return null;
+            }
+            if (stored == null && client != null) {
+                passedThrough.incrementAndGet();
+                relay(client, response);
+            }
+            return stored;
+        } finally {
+            response.body().close();
+        }
+    }
+
+    private void refreshQuietly(String url, String key, CacheEntry stale) {
+        if (downloads.isRunning(key)) {
+            return;
+        }
+        try {
+            downloads.execute(key, () -> fetch(null, url, key, stale), CancellationToken.NONE);
+        } catch (IOException e) {
+            System.err.println("[LanProxy] Background refresh failed: " + url + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams the body into the blob store and indexes it like WebPageFetcher does
+     */
+    private CacheEntry store(String key, HttpResponse<InputStream> response, long now) throws IOException {
+        Path blob;
+        long wireSize;
+        try (DecodedBody body = httpPool.decode(response)) {
+            blob = index.getBlobStore().store(body, getExtension(response.uri().getPath()));
+            wireSize = body.getWireBytes();
+        }
+
+        HttpHeaders headers = response.headers();
+        CacheEntry entry = new CacheEntry(key, index.toLocalPath(blob));
+        CachePolicy.apply(entry, headers, now);
+        entry.setSize(Files.size(blob));
+        entry.setWireSize(wireSize);
+        entry.setEtag(headers.firstValue("ETag").orElse(null));
+        entry.setLastModified(headers.firstValue("Last-Modified").orElse(null));
+        entry.setContentType(headers.firstValue("Content-Type").orElse(null));
+        index.put(entry);
+        indexDirty.set(true);
+        return entry;
+    }
+
+    /**
+     * Shared caches must not keep personal or uncacheable responses (RFC 9111, section 3)
+     */
+    private boolean isStorable(HttpResponse<?> response, String key) {
+        if (response.statusCode() != 200) {
+            return false;
+        }
+        HttpHeaders headers = response.headers();
+        if (headers.firstValue("Set-Cookie").isPresent()) {
+            return false;
+        }
+        for (String value : headers.allValues("Cache-Control")) {
+            String directives = value.toLowerCase(Locale.ROOT);
+            if (directives.contains("no-store") || directives.contains("private")) {
+                return false;
+            }
+        }
+        for (String value : headers.allValues("Vary")) {
+            for (String header : value.split(",")) {
+                // Bodies are stored decoded, so they do not vary by Accept-Encoding
+                if (!header.isBlank() && !header.trim().equalsIgnoreCase("Accept-Encoding")) {
+                    return false;
+                }
+            }
+        }
+        // Never replace a page or stylesheet the browser rewrote for itself
+        CacheEntry existing = index.get(key);
+        return existing == null || isOriginalCopy(existing);
+    }
+
+    /**
+     * Pages of WebPageFetcher live outside the blob store and stylesheets have a manifest,
+     * both were rewritten to local paths
+     */
+    private boolean isOriginalCopy(CacheEntry entry) {
+        return BlobStore.isBlobPath(entry.getLocalPath())
+                && !Files.exists(PageManifest.forPage(index.resolve(entry)));
+    }
+
+    private static boolean isShareable(String method, Headers headers) {
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        // Responses to personal requests must not be given to other users
+        return !headers.containsKey("Authorization") && !headers.containsKey("Cookie");
+    }
+
+    private static boolean wantsRevalidation(Headers headers) {
+        String cacheControl = String.valueOf(headers.getFirst("Cache-Control")).toLowerCase(Locale.ROOT);
+        return cacheControl.contains("no-cache") || cacheControl.contains("max-age=0")
+                || "no-cache".equalsIgnoreCase(headers.getFirst("Pragma"));
+    }
+
+    private void send(HttpExchange exchange, CacheEntry entry) throws IOException {
+        exchange.getResponseHeaders().set("Via", VIA);
+        exchange.getResponseHeaders().set("Age",
+                Long.toString(Math.max(0, (System.currentTimeMillis() - entry.getFetchTime()) / 1000)));
+        // Same bytes as the origin's (decoded), so the origin's validator stays valid for clients
+        CacheServer.send(exchange, entry, index.resolve(entry), entry.getEtag(), CacheServer.getFreshnessControl(entry));
+        if (!"HEAD".equals(exchange.getRequestMethod())) {
+            bytesFromCache.addAndGet(entry.getSize());
+        }
+    }
+
+    /**
+     * Forwards the request as it is and streams the answer back, nothing is stored
+     */
+    private void passThrough(HttpExchange exchange, String url) throws IOException {
+        passedThrough.incrementAndGet();
+        String method = exchange.getRequestMethod();
+        Headers requestHeaders = exchange.getRequestHeaders();
+
+        HttpRequest.BodyPublisher body = requestHeaders.containsKey("Content-Length")
+                || requestHeaders.containsKey("Transfer-Encoding")
+                ? HttpRequest.BodyPublishers.ofInputStream(exchange::getRequestBody)
+                : HttpRequest.BodyPublishers.noBody();
+        HttpRequest.Builder builder = httpPool.newRequest(url).header("Via", VIA).method(method, body);
+        copyRequestHeaders(requestHeaders, builder, Set.of());
+
+        HttpRequest request = builder.build();
+        HttpResponse<InputStream> response = httpPool.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            if (!response.uri().equals(request.uri())) {
+                exchange.getResponseHeaders().set("Location", response.uri().toString());
+                exchange.getResponseHeaders().set("Via", VIA);
+                exchange.sendResponseHeaders(302, -1);
+                return;
+            }
+            relay(exchange, response);
+        } finally {
+            response.body().close();
+        }
+    }
+
+    /**
+     * Sends an origin response to the client. Bodies are decoded by the pool,
+     * so Content-Encoding and the origin's length are dropped.
+     */
+    private void relay(HttpExchange exchange, HttpResponse<InputStream> response) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        response.headers().map().forEach((name, values) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (!HOP_BY_HOP.contains(lower) && !lower.equals("content-length")
+                    && !lower.equals("content-encoding") && !lower.startsWith(":")) {
+                headers.put(name, List.copyOf(values));
+            }
+        });
+        headers.set("Via", VIA);
+
+        int status = response.statusCode();
+        if ("HEAD".equals(exchange.getRequestMethod()) || status == 204 || status == 304) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, 0);
+        try (DecodedBody body = httpPool.decode(response); OutputStream out = exchange.getResponseBody()) {
+            bytesFromOrigin.addAndGet(body.transferTo(out));
+        }
+    }
+
+    private static void copyRequestHeaders(Headers from, HttpRequest.Builder to, Set<String> skipped) {
+        from.forEach((name, values) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (HOP_BY_HOP.contains(lower) || NOT_FORWARDED.contains(lower) || skipped.contains(lower)) {
+                return;
+            }
+            try {
+                to.setHeader(name, values.get(0));
+                for (int i = 1; i < values.size(); i++) {
+                    to.header(name, values.get(i));
+                }
+            } catch (IllegalArgumentException e) {
+                // Header the JDK client does not allow to set
+            }
+        });
+    }
+
+    private boolean isAllowed(InetAddress address) {
+        if (allowAll || address.isLoopbackAddress() || address.isSiteLocalAddress() || address.isLinkLocalAddress()) {
+            return true;
+        }
+        // IPv6 unique local addresses (fc00::/7)
+        byte[] bytes = address.getAddress();
+        return bytes.length == 16 && (bytes[0] & 0xFE) == 0xFC;
+    }
+
+    private static boolean isLooping(Headers headers) {
+        List<String> via = headers.get("Via");
+        return via != null && via.stream().anyMatch(value -> value.contains(VIA));
+    }
+
+    private static String getExtension(String path) {
+        if (path == null) {
+            return "";
+        }
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && name.length() - dot <= 8 ? name.substring(dot).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Answers with 502 / 504 unless the response was already started
+     */
+    private static void sendError(HttpExchange exchange, Exception e) {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            int status = e instanceof java.net.http.HttpTimeoutException ? 504 : 502;
+            sendText(exchange, status, "Proxy error: " + e.getMessage() + "\n");
+        } catch (IOException ignored) {
+            // Client is gone
+        }
+    }
+
+    private void saveIndexIfDirty() {
+        if (indexDirty.getAndSet(false)) {
+            index.save();
+        }
+    }
+
+    /**
+     * @return Share of shareable requests answered without downloading the body (0..1)
+     */
+    public double getHitRate() {
+        long served = hits.get() + revalidated.get() + coalesced.get();
+        long total = served + misses.get();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    private String getReport() {
+        return "Requests: " + requests.get() + "\n" +
+                "Hits: " + hits.get() + ", revalidated: " + revalidated.get() +
+                ", coalesced: " + coalesced.get() + ", misses: " + misses.get() + "\n" +
+                "Passed through: " + passedThrough.get() + ", errors: " + errors.get() + "\n" +
+                "Hit rate: " + String.format(Locale.ROOT, "%.1f%%", getHitRate() * 100) + "\n" +
+                "Bytes from cache: " + bytesFromCache.get() + ", from origin: " + bytesFromOrigin.get() + "\n";
+    }
+
+    public void printReport() {
+        for (String line : getReport().split("\n")) {
+            System.out.println("[LanProxy] " + line);
+        }
+    }
+}
@@ -1,18 +1,33 @@
 package org.example.webbrowser;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.File;
-import java.net.HttpURLConnection;
+import org.example.webbrowser.cache.CacheServer;
+import org.example.webbrowser.fetch.CancellationToken;
+import org.example.webbrowser.fetch.FetchProgressListener;
+import org.example.webbrowser.fetch.HtmlCharset;
+import org.example.webbrowser.fetch.HttpClientPool;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class HTTPRequest {
+    /**
+     * Threads that run page fetches for sendAsync(), so the caller (FX thread) never blocks
+     */
+    private static ExecutorService pageLoader;
+
     private String url;
     private String method;
+    private CancellationToken cancellation = CancellationToken.NONE;
+    private FetchProgressListener progressListener = FetchProgressListener.NONE;
 
     public HTTPRequest(String url, String method) {
         this.url = url;
@@ -35,10 +50,60 @@ public class HTTPRequest {
         this.method = method;
     }
 
+    public CancellationToken getCancellationToken() {
+        return cancellation;
+    }
+
+    /**
+     * Ties the request and every resource download it starts to a navigation
+     */
+    public void setCancellationToken(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * @param progressListener Receives progress of the page fetch, called from background threads
+     */
+    public void setProgressListener(FetchProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    private static synchronized ExecutorService getPageLoader() {
+        if (pageLoader == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            pageLoader = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "page-loader-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pageLoader;
+    }
+
+    /**
+     * Same as sendRequest(), but runs on a background thread
+     *
+     * @param callbackExecutor Where the returned future completes, e.g. Platform::runLater for the FX thread
+     * @return Future completed with the response once the page is shown (render-blocking resources saved)
+     */
+    public CompletableFuture<HTTPResponse> sendAsync(Executor callbackExecutor) {
+        CompletableFuture<HTTPResponse> result = new CompletableFuture<>();
+
+        CompletableFuture.supplyAsync(this::sendRequest, getPageLoader())
+                .whenComplete((response, error) -> callbackExecutor.execute(() -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(response);
+                    }
+                }));
+        return result;
+    }
+
     /**
      * Sends request to server and gets HTTPResponse
      * Uses WebPageFetcher to download all resources and cache locally
-     * Returns file:// URL to index.html so WebEngine can load resources properly
+     * Returns the page's URL on the local cache server so WebEngine loads it and its resources over HTTP
      */
     public HTTPResponse sendRequest() {
         HTTPResponse response = new HTTPResponse();
@@ -48,28 +113,37 @@ public class HTTPRequest {
             String domain = extractDomain(url);
             String cacheDir = "./browser_cache/" + domain;
 
-            // Use WebPageFetcher to download page and all resources
+            // Use WebPageFetcher to download page and all resources,
+            // images and fonts finish in background after the page is shown
             WebPageFetcher fetcher = new WebPageFetcher(url, cacheDir);
-            String indexHtmlPath = fetcher.fetchAndSave();
-
-            // Read the saved HTML file
-            String htmlContent = new String(Files.readAllBytes(Paths.get(indexHtmlPath)));
+            if (cancellation != CancellationToken.NONE) {
+                fetcher.setCancellationToken(cancellation);
+            }
+            fetcher.setProgressListener(progressListener);
+            String indexHtmlPath = fetcher.fetchRenderBlocking();
 
-            // Create successful response with file:// URL
+            // Body stays on disk until someone asks for it, WebEngine loads the page from the cache server
             response.setStatusCode(200);
-            response.setBody(htmlContent);
+            response.setBodyFile(Paths.get(indexHtmlPath), fetcher.getPageCharset());
 
             Map<String, String> headers = new HashMap<>();
             headers.put("Content-Type", "text/html");
             headers.put("X-Cache-Dir", cacheDir);
             headers.put("X-Index-Path", indexHtmlPath);
-            headers.put("X-File-URL", new File(indexHtmlPath).toURI().toString());
+            String localUrl = CacheServer.shared().toLocalUrl(url);
+            headers.put("X-Local-URL", localUrl);
             headers.put("X-Fetcher", "WebPageFetcher");
             response.setHeaders(headers);
 
             System.out.println("Page loaded successfully via WebPageFetcher");
             System.out.println("Cache location: " + cacheDir);
-            System.out.println("File URL: " + new File(indexHtmlPath).toURI().toString());
+            System.out.println("Local URL: " + localUrl);
+
+        } catch (InterruptedIOException e) {
+            // Cancelled or over the page deadline, a fallback request would only be cancelled too
+            System.err.println(e.getMessage());
+            response.setStatusCode(504);
+            response.setBody(e.getMessage());
 
         } catch (Exception e) {
             // If WebPageFetcher fails, try simple HTTP request
@@ -88,44 +162,28 @@ public class HTTPRequest {
         HTTPResponse response = new HTTPResponse();
 
         try {
-            URL urlObj = new URL(url);
-            HttpURLConnection connection = (HttpURLConnection) urlObj.openConnection();
-            connection.setRequestMethod(method);
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
-            connection.setRequestProperty("User-Agent", "Mozilla/5.0");
+            HttpClientPool httpPool = HttpClientPool.shared();
+            java.net.http.HttpRequest request = httpPool.newRequest(url)
+                    .method(method, java.net.http.HttpRequest.BodyPublishers.noBody())
+                    .build();
+
+            // Error responses also have a body, the client reads it the same way
+            java.net.http.HttpResponse<InputStream> httpResponse =
+                    httpPool.send(request, java.net.http.HttpResponse.BodyHandlers.ofInputStream(), cancellation);
 
-            int statusCode = connection.getResponseCode();
-            response.setStatusCode(statusCode);
+            response.setStatusCode(httpResponse.statusCode());
 
             // Read headers
             Map<String, String> headers = new HashMap<>();
-            connection.getHeaderFields().forEach((key, value) -> {
-                if (key != null) {
-                    headers.put(key, String.join(", ", value));
-                }
-            });
+            httpResponse.headers().map().forEach((key, value) -> headers.put(key, String.join(", ", value)));
             response.setHeaders(headers);
 
-            // Read response body
-            StringBuilder body = new StringBuilder();
-            BufferedReader reader;
-
-            if (statusCode >= 200 && statusCode < 300) {
-                reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            } else {
-                reader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
+            try (InputStream body = httpPool.decode(httpResponse)) {
+                byte[] bytes = body.readAllBytes();
+                String contentType = httpResponse.headers().firstValue("Content-Type").orElse(null);
+                response.setBody(bytes, HtmlCharset.detect(bytes, bytes.length, contentType).getCharset());
             }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                body.append(line).append("\n");
-            }
-            reader.close();
-
-            response.setBody(body.toString());
-            connection.disconnect();
-
         } catch (Exception e) {
             response.setStatusCode(500);
             response.setBody("Error: " + e.getMessage());
@@ -1,40 +1,196 @@
 package org.example.webbrowser;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * HTTP response with a byte body that is decoded to text only when asked for
+ *
+ * The body is kept in the form it arrived in: a String, bytes on the heap, or a
+ * file on disk (a cached page). Bytes are read and text is decoded at most once,
+ * on first use, so a large page is not copied and decoded several times on its
+ * way from the network or cache to the WebView.
+ *
+ * Files are read rather than memory-mapped: the page file is replaced when its
+ * background downloads finish, and a mapping would keep the old file locked on Windows.
+ */
 public class HTTPResponse {
     private Integer statusCode;
     private Map<String, String> headers;
+
     private String body;
-    
+    private ByteBuffer bodyBytes;
+    private Path bodyFile;
+    private Charset charset = StandardCharsets.UTF_8;
+
     public HTTPResponse() {
         this.statusCode = 0;
         this.headers = new HashMap<>();
         this.body = "";
     }
-    
+
     public Integer getStatusCode() {
         return statusCode;
     }
-    
+
     public void setStatusCode(Integer statusCode) {
         this.statusCode = statusCode;
     }
-    
+
     public Map<String, String> getHeaders() {
         return headers;
     }
-    
+
     public void setHeaders(Map<String, String> headers) {
         this.headers = headers;
     }
-    
-    public String getBody() {
+
+    /**
+     * Body as text, decoded from the bytes on first call
+     *
+     * @return Body text
+     * @throws UncheckedIOException if a file-backed body cannot be read
+     */
+    public synchronized String getBody() {
+        if (body == null) {
+            body = charset.decode(getBytes().duplicate()).toString();
+        }
         return body;
     }
-    
-    public void setBody(String body) {
-        this.body = body;
+
+    /**
+     * @param body Body text, null (e.g. from error paths) is kept as an empty body
+     */
+    public synchronized void setBody(String body) {
+        this.body = body != null ? body : "";
+        this.bodyBytes = null;
+        this.bodyFile = null;
+        this.charset = StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Uses received bytes as the body without copying them
+     *
+     * @param bytes Body bytes, must not be changed afterwards
+     * @param charset Charset to decode the text with
+     */
+    public void setBody(byte[] bytes, Charset charset) {
+        setBody(ByteBuffer.wrap(bytes), charset);
+    }
+
+    /**
+     * @param bytes Body bytes from position to limit, must not be changed afterwards
+     * @param charset Charset to decode the text with
+     */
+    public synchronized void setBody(ByteBuffer bytes, Charset charset) {
+        this.body = null;
+        this.bodyBytes = bytes.slice();
+        this.bodyFile = null;
+        this.charset = charset;
+    }
+
+    /**
+     * Uses a file as the body, it is only read when the body is first needed
+     *
+     * @param file File holding the body (e.g. a cached page)
+     * @param charset Charset to decode the text with
+     */
+    public synchronized void setBodyFile(Path file, Charset charset) {
+        this.body = null;
+        this.bodyBytes = null;
+        this.bodyFile = file;
+        this.charset = charset;
+    }
+
+    /**
+     * @return File the body is read from, or null if the body is in memory
+     */
+    public synchronized Path getBodyFile() {
+        return bodyFile;
+    }
+
+    public synchronized Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Body bytes as a read-only buffer, encoded from the text if the body was set as a String
+     *
+     * @return Read-only buffer positioned at the start of the body
+     * @throws UncheckedIOException if a file-backed body cannot be read
+     */
+    public synchronized ByteBuffer getBodyBuffer() {
+        return getBytes().asReadOnlyBuffer();
+    }
+
+    private ByteBuffer getBytes() {
+        if (bodyBytes == null) {
+            bodyBytes = bodyFile != null ? readFile(bodyFile) : charset.encode(body);
+        }
+        return bodyBytes;
+    }
+
+    /**
+     * Streams the body; a file-backed body that was not read yet is streamed from disk
+     *
+     * @return Body stream
+     * @throws IOException if the file cannot be opened
+     */
+    public synchronized InputStream openBody() throws IOException {
+        if (bodyBytes == null && bodyFile != null) {
+            return Files.newInputStream(bodyFile);
+        }
+        ByteBuffer buffer = getBytes().duplicate();
+        if (buffer.hasArray()) {
+            return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * @return Body size in bytes
+     */
+    public synchronized long getBodyLength() {
+        if (bodyBytes == null && bodyFile != null) {
+            try {
+                return Files.size(bodyFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return getBytes().remaining();
+    }
+
+    /**
+     * Reads a whole file into one exactly sized heap buffer
+     */
+    private static ByteBuffer readFile(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Body too large: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until full or end of file
+            }
+            buffer.flip();
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
-}
\ No newline at end of file
+}
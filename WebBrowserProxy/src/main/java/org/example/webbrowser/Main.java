@@ -5,6 +5,8 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.example.webbrowser.cache.CacheServer;
+import org.example.webbrowser.fetch.HttpClientPool;
 
 import java.io.IOException;
 
@@ -21,7 +23,16 @@ public class Main extends Application {
 		stage.show();
 	}	
 
+	@Override
+	public void stop() {
+		// Dispatcher threads of the servers would keep the JVM running
+		CacheServer.stopShared();
+		CachingProxyServer.stopShared();
+	}
+
 	public static void main(String[] args) {
+		// Before any HttpClient exists, the JDK reads its pool settings only once
+		HttpClientPool.configureJdkPool();
 		launch(args);
 	}
 }
\ No newline at end of file
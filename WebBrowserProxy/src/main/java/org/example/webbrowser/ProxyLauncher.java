@@ -0,0 +1,30 @@
+package org.example.webbrowser;
+
+import org.example.webbrowser.fetch.HttpClientPool;
+
+/**
+ * Runs the LAN caching proxy without the browser window
+ *
+ * Usage: ProxyLauncher [port], or -Dwebbrowser.proxy.port=N (default 3128).
+ * The other -Dwebbrowser.proxy.* settings of CachingProxyServer apply as well.
+ */
+public class ProxyLauncher {
+
+    private static final int DEFAULT_PORT = 3128;
+
+    public static void main(String[] args) throws Exception {
+        // Before any HttpClient exists, the JDK reads its pool settings only once
+        HttpClientPool.configureJdkPool();
+
+        if (args.length > 0) {
+            System.setProperty("webbrowser.proxy.port", args[0]);
+        } else if (System.getProperty("webbrowser.proxy.port") == null) {
+            System.setProperty("webbrowser.proxy.port", String.valueOf(DEFAULT_PORT));
+        }
+
+        CachingProxyServer proxy = CachingProxyServer.startFromProperties();
+        Runtime.getRuntime().addShutdownHook(new Thread(CachingProxyServer::stopShared, "lan-proxy-shutdown"));
+        System.out.println("Proxy running at " + proxy.getAddress() + ", press Ctrl+C to stop");
+        // The server's dispatcher thread keeps the JVM running
+    }
+}
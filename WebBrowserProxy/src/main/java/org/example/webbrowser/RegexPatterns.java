@@ -0,0 +1,44 @@
+package org.example.webbrowser;
+
+import java.util.regex.Pattern;
+
+/**
+ * Regular expressions used while loading a page, compiled once
+ *
+ * Pattern is immutable and safe to share between threads, only the Matcher
+ * created from it belongs to one caller. Compiling on every call cost more
+ * than matching for the short inputs most of these see (a typed URL, a file name).
+ */
+public final class RegexPatterns {
+
+    /**
+     * Address typed into the address bar: optional scheme, host with a top-level domain, optional path
+     */
+    public static final Pattern TYPED_URL =
+            Pattern.compile("^(https?://)?(www\\.)?[a-zA-Z0-9-]+(\\.[a-zA-Z]{2,})+(/.*)?$");
+
+    /**
+     * img tag, groups: attributes before src, src value, attributes after it
+     */
+    public static final Pattern IMG_TAG =
+            Pattern.compile("<img([^>]*?)src=[\"']([^\"']*)[\"']([^>]*?)>", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * base tag, group 2 is the href value
+     */
+    public static final Pattern BASE_HREF =
+            Pattern.compile("<base\\b[^>]*?\\bhref\\s*=\\s*([\"']?)([^\"'\\s>]+)\\1", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Opening head tag (not header)
+     */
+    public static final Pattern HEAD_OPEN_TAG = Pattern.compile("<head\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Characters not kept in file names of cached resources
+     */
+    public static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[^a-zA-Z0-9._-]");
+
+    private RegexPatterns() {
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.webbrowser;
+
+import org.example.webbrowser.factory_template.Resource;
+
+/**
+ * Outcome of loading one resource of a page
+ */
+public class ResourceLoadResult {
+
+    public enum Status {
+        LOADED,
+        FAILED,
+        CANCELLED,
+        /** Not loaded on purpose, e.g. images that load lazily */
+        SKIPPED
+    }
+
+    private final Resource resource;
+    private final Status status;
+    private final Throwable error;
+    private final long durationMillis;
+
+    public ResourceLoadResult(Resource resource, Status status, Throwable error, long durationMillis) {
+        this.resource = resource;
+        this.status = status;
+        this.error = error;
+        this.durationMillis = durationMillis;
+    }
+
+    public Resource getResource() {
+        return resource;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Why the load failed, null if it did not fail
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return resource.getFileName() + ": " + status + " in " + durationMillis + " ms" +
+                (error != null ? " (" + error.getMessage() + ")" : "");
+    }
+}
@@ -12,7 +12,11 @@ import javafx.scene.web.WebHistory;
 import javafx.scene.web.WebView;
 import netscape.javascript.JSObject;
 
+import org.example.webbrowser.cache.CacheIndex;
+import org.example.webbrowser.cache.CacheJanitor;
+import org.example.webbrowser.cache.CacheServer;
 import org.example.webbrowser.chain.*;
+import org.example.webbrowser.fetch.CancellationToken;
 import org.example.webbrowser.p2p.*;
 import org.example.webbrowser.factory_template.*;
 import org.example.webbrowser.visitor.*;
@@ -47,6 +51,18 @@ public class WebBrowserController implements Initializable {
     private Browser browser;
     private AddressBar addressBar;
     private WebPage currentWebPage;
+    private java.nio.file.Path currentPageFile;
+
+    // True while currentWebPage holds the parse of the HTML the WebView is loading,
+    // onPageLoaded then reuses it instead of reading the whole DOM back
+    private boolean pageParsedBeforeLoad;
+
+    // Cancelled when the user navigates elsewhere, aborts downloads of the previous page
+    private CancellationToken currentNavigation;
+
+    // Progress of the current navigation, shown in statusLabel
+    private final javafx.beans.property.StringProperty statusText =
+            new javafx.beans.property.SimpleStringProperty("Ready");
 
     // Local web server for testing
     private WebServer localServer;
@@ -129,28 +145,47 @@ public class WebBrowserController implements Initializable {
         // Initialize Visitor for resource size calculation
         sizeCalculator = new ResourceSizeCalculatorVisitor();
 
+        if (statusLabel != null) {
+            statusLabel.textProperty().bind(statusText);
+        }
+
+        // Load cache index, start the cache server and check the cache size off the FX thread
+        CacheJanitor.startInBackground(CacheIndex.DEFAULT_ROOT);
+        CacheServer.startInBackground();
+
         // Initialize P2P Node
         initializeP2P();
 
         // Initialize local test web server
         initializeLocalServer();
 
+        // Share the cache with the LAN if a proxy port is configured
+        initializeLanProxy();
+
         // Listener for page loading
         webEngine.getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
             if (newState == Worker.State.SUCCEEDED) {
                 onPageLoaded();
                 injectLinkHandler();
+                if (currentPageFile != null) {
+                    // A no-store page stays on disk only until it is shown
+                    CacheJanitor.discardIfNoStore(CacheIndex.DEFAULT_ROOT, currentPageFile);
+                }
             } else if (newState == Worker.State.FAILED) {
+                pageParsedBeforeLoad = false;
                 System.err.println("Page loading failed");
                 browser.handleError(500);
+            } else if (newState == Worker.State.CANCELLED) {
+                pageParsedBeforeLoad = false;
             }
         });
 
         // Listen for location changes (navigation)
         webEngine.locationProperty().addListener((obs, oldLocation, newLocation) -> {
             if (newLocation != null && !newLocation.isEmpty()) {
-                // Update text field with current URL
-                textField.setText(extractOriginalUrl(newLocation));
+                // Update text field with current URL, a local URL means the server is running
+                CacheServer cacheServer = CacheServer.getStarted();
+                textField.setText(cacheServer != null ? cacheServer.toOriginalUrl(newLocation) : newLocation);
 
                 // Share with peers that we visited this page
                 shareCurrentPageWithPeers();
@@ -576,7 +611,7 @@ public class WebBrowserController implements Initializable {
             String absoluteUrl = resolveUrl(currentUrl, href);
             System.out.println("Resolved to: " + absoluteUrl);
 
-            textField.setText(extractOriginalUrl(absoluteUrl));
+            textField.setText(absoluteUrl);
             navigateToUrl(absoluteUrl);
 
         } catch (Exception e) {
@@ -596,11 +631,10 @@ public class WebBrowserController implements Initializable {
                 return base.getProtocol() + ":" + relativeUrl;
             }
 
-            if (baseUrl.startsWith("file://")) {
-                String originalUrl = extractOriginalUrl(baseUrl);
-                java.net.URL base = new java.net.URL(originalUrl);
-                java.net.URL resolved = new java.net.URL(base, relativeUrl);
-                return resolved.toString();
+            // Links of a cached page resolve against the page's network URL
+            CacheServer cacheServer = CacheServer.getStarted();
+            if (cacheServer != null) {
+                baseUrl = cacheServer.toOriginalUrl(baseUrl);
             }
 
             java.net.URL base = new java.net.URL(baseUrl);
@@ -613,27 +647,6 @@ public class WebBrowserController implements Initializable {
         }
     }
 
-    private String extractOriginalUrl(String fileUrl) {
-        if (!fileUrl.startsWith("file://")) {
-            return fileUrl;
-        }
-
-        try {
-            String path = fileUrl;
-            int cacheIndex = path.indexOf("browser_cache");
-            if (cacheIndex != -1) {
-                String afterCache = path.substring(cacheIndex + "browser_cache".length() + 1);
-                String domain = afterCache.split("/")[0];
-                domain = domain.replace("_", ".");
-                return "https://" + domain;
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to extract original URL from: " + fileUrl);
-        }
-
-        return fileUrl;
-    }
-
     private void navigateToUrl(String url) {
         addressBar.setUrl(url);
 
@@ -644,6 +657,20 @@ public class WebBrowserController implements Initializable {
         }
     }
 
+    /**
+     * Starts the caching forward proxy when -Dwebbrowser.proxy.port is set
+     */
+    private void initializeLanProxy() {
+        try {
+            CachingProxyServer proxy = CachingProxyServer.startFromProperties();
+            if (proxy != null) {
+                System.out.println("LAN proxy running at: " + proxy.getAddress());
+            }
+        } catch (java.io.IOException e) {
+            System.err.println("Failed to start LAN proxy: " + e.getMessage());
+        }
+    }
+
     private void initializeLocalServer() {
         localServer = new WebServer("test.com");
         localServer.addResource("index.html");
@@ -732,22 +759,58 @@ public class WebBrowserController implements Initializable {
         System.out.println("LOADING WEBSITE: " + url);
         System.out.println("=".repeat(50));
 
-        try {
-            HTTPRequest request = new HTTPRequest(url, "GET");
-            HTTPResponse response = request.sendRequest();
+        CancellationToken navigation = startNavigation(url);
 
+        HTTPRequest request = new HTTPRequest(url, "GET");
+        request.setCancellationToken(navigation);
+        request.setProgressListener((message, done, total) -> javafx.application.Platform.runLater(() -> {
+            if (navigation == currentNavigation) {
+                statusText.set(total > 0 ? message + " (" + done + "/" + total + ")" : message + "...");
+            }
+        }));
+
+        // Fetch and parse run off the FX thread, the window stays responsive while the page downloads
+        browser.loadPageAsync(request, javafx.application.Platform::runLater).whenComplete((response, error) -> {
+            if (navigation != currentNavigation) {
+                // User already went to another page
+                return;
+            }
+            if (error != null) {
+                statusText.set("Failed to load " + url);
+                browser.handleError(500);
+                return;
+            }
+            showRealWebsite(response);
+        });
+    }
+
+    /**
+     * Displays a fetched page, runs on the FX thread
+     */
+    private void showRealWebsite(HTTPResponse response) {
+        try {
             handlerChain.process(response);
 
-            String fileUrl = response.getHeaders().get("X-File-URL");
-            if (fileUrl != null) {
-                webEngine.load(fileUrl);
+            String indexPath = response.getHeaders().get("X-Index-Path");
+            currentPageFile = indexPath != null ? java.nio.file.Paths.get(indexPath) : null;
+
+            String localUrl = response.getHeaders().get("X-Local-URL");
+            if (localUrl != null) {
+                webEngine.load(localUrl);
             } else {
                 webEngine.loadContent(response.getBody(), "text/html");
             }
 
-            currentWebPage = new WebPage();
-            currentWebPage.setRawHTML(response.getBody());
-            currentWebPage.parseHTML();
+            if (response.getStatusCode() == 200) {
+                // Parsed by Browser on the page loader thread
+                currentWebPage = browser.getCurrentPage();
+            } else {
+                // Error page from the handler chain, small enough to parse here
+                currentWebPage = new WebPage();
+                currentWebPage.setRawHTML(response.getBody());
+                currentWebPage.parseHTML();
+            }
+            pageParsedBeforeLoad = true;
 
             // VISITOR PATTERN: Calculate size of loaded page
             if (response.getStatusCode() == 200) {
@@ -760,8 +823,21 @@ public class WebBrowserController implements Initializable {
         }
     }
 
+    /**
+     * Cancels downloads still running for the previous page and starts a new navigation with its own deadline
+     */
+    private CancellationToken startNavigation(String url) {
+        if (currentNavigation != null) {
+            currentNavigation.cancel("navigated to " + url);
+        }
+        currentNavigation = CancellationToken.forNavigation();
+        return currentNavigation;
+    }
+
     private void handleLocalServerRequest(String url) {
         System.out.println("\n=== Local Server Request ===");
+        startNavigation(url);
+        statusText.set("Done");
 
         String fullUrl = url;
         if (!url.startsWith("http://") && !url.startsWith("https://")) {
@@ -804,9 +880,11 @@ public class WebBrowserController implements Initializable {
 
         webEngine.loadContent(displayContent, "text/html");
 
+        currentPageFile = null;
         currentWebPage = new WebPage();
         currentWebPage.setRawHTML(response.getBody());
         currentWebPage.parseHTML();
+        pageParsedBeforeLoad = true;
 
         // VISITOR PATTERN IN ACTION!
         if (response.getStatusCode() == 200) {
@@ -838,6 +916,7 @@ public class WebBrowserController implements Initializable {
         System.out.println("========================================");
 
         sizeCalculator.reset();
+        sizeCalculator.setCache(CacheIndex.shared(), currentPageFile);
         currentWebPage.acceptVisitor(sizeCalculator);
         sizeCalculator.printReport();
 
@@ -848,6 +927,7 @@ public class WebBrowserController implements Initializable {
                         sizeCalculator.getJsCount() +
                         sizeCalculator.getImageCount()));
         System.out.println("  Total size: " + formatBytes(sizeCalculator.getTotalSize()));
+        System.out.println("  Transferred: " + formatBytes(sizeCalculator.getWireSize()));
     }
 
     private String formatBytes(long bytes) {
@@ -865,13 +945,8 @@ public class WebBrowserController implements Initializable {
             return html;
         }
 
-        java.util.regex.Pattern imgPattern = java.util.regex.Pattern.compile(
-                "<img([^>]*?)src=[\"']([^\"']*)[\"']([^>]*?)>",
-                java.util.regex.Pattern.CASE_INSENSITIVE
-        );
-
-        java.util.regex.Matcher matcher = imgPattern.matcher(html);
-        StringBuffer result = new StringBuffer();
+        java.util.regex.Matcher matcher = RegexPatterns.IMG_TAG.matcher(html);
+        StringBuilder result = new StringBuilder(html.length());
 
         while (matcher.find()) {
             String beforeSrc = matcher.group(1);
@@ -901,24 +976,137 @@ public class WebBrowserController implements Initializable {
 
     private void onPageLoaded() {
         try {
-            String htmlContent = (String) webEngine.executeScript("document.documentElement.outerHTML");
+            if (currentWebPage != null && pageParsedBeforeLoad) {
+                // Parsed and measured from the same HTML a moment ago, only what scripts add is new
+                pageParsedBeforeLoad = false;
+            } else {
+                // Navigation inside the WebView (history, reload), nothing was parsed for it
+                String htmlContent = (String) webEngine.executeScript("document.documentElement.outerHTML");
 
-            if (currentWebPage == null) {
-                currentWebPage = new WebPage();
-            }
+                if (currentWebPage == null) {
+                    currentWebPage = new WebPage();
+                }
 
-            currentWebPage.setRawHTML(htmlContent);
-            currentWebPage.parseHTML();
+                currentWebPage.setRawHTML(htmlContent);
+                currentWebPage.parseHTML();
 
-            // VISITOR PATTERN: Calculate size after page loaded
-            System.out.println("\n[WebBrowserController] Page loaded via WebEngine, calculating size...");
-            calculatePageSize();
+                // VISITOR PATTERN: Calculate size after page loaded
+                System.out.println("\n[WebBrowserController] Page loaded via WebEngine, calculating size...");
+                calculatePageSize();
+            }
+
+            installResourceObserver();
 
         } catch (Exception e) {
             System.err.println("Error in onPageLoaded: " + e.getMessage());
         }
     }
 
+    /**
+     * Watches the DOM for resource elements that scripts add or change (lazy images,
+     * injected scripts and stylesheets) and reports only their start tags to
+     * onResourcesAdded. The first report covers elements inserted while the page loaded.
+     */
+    private void installResourceObserver() {
+        try {
+            JSObject window = (JSObject) webEngine.executeScript("window");
+            window.setMember("javaController", this);
+
+            String script = """
+                (function() {
+                    if (window.resourceObserverInstalled) return;
+                    window.resourceObserverInstalled = true;
+
+                    var SELECTOR = 'img, script[src], link[href], source, style, [style*="url("]';
+                    var ATTRIBUTES = ['rel', 'as', 'type', 'async', 'defer', 'loading',
+                                      'href', 'src', 'srcset', 'imagesrcset', 'style'];
+
+                    function startTag(element) {
+                        var tag = element.tagName.toLowerCase();
+                        if (tag === 'style') {
+                            return '<style>' + element.textContent + '</style>';
+                        }
+                        var html = '<' + tag;
+                        for (var i = 0; i < ATTRIBUTES.length; i++) {
+                            var value = element.getAttribute(ATTRIBUTES[i]);
+                            if (value !== null) {
+                                html += ' ' + ATTRIBUTES[i] + '="' + value.replace(/"/g, '&quot;') + '"';
+                            }
+                        }
+                        // A bare script start tag would hide the tags after it from the scanner
+                        return html + (tag === 'script' ? '></script>' : '>');
+                    }
+
+                    function collect(node, tags) {
+                        if (node.nodeType !== 1) return;
+                        if (node.matches(SELECTOR)) tags.push(startTag(node));
+                        var nested = node.querySelectorAll(SELECTOR);
+                        for (var i = 0; i < nested.length; i++) {
+                            tags.push(startTag(nested[i]));
+                        }
+                    }
+
+                    function report(tags) {
+                        if (tags.length > 0) window.javaController.onResourcesAdded(tags.join('\\n'));
+                    }
+
+                    var initial = [];
+                    collect(document.documentElement, initial);
+                    report(initial);
+
+                    new MutationObserver(function(mutations) {
+                        var tags = [];
+                        for (var i = 0; i < mutations.length; i++) {
+                            var mutation = mutations[i];
+                            if (mutation.type === 'attributes') {
+                                if (mutation.target.matches(SELECTOR)) tags.push(startTag(mutation.target));
+                            } else if (mutation.target.tagName === 'STYLE') {
+                                tags.push(startTag(mutation.target));
+                            } else {
+                                for (var j = 0; j < mutation.addedNodes.length; j++) {
+                                    collect(mutation.addedNodes[j], tags);
+                                }
+                            }
+                        }
+                        report(tags);
+                    }).observe(document.documentElement, {
+                        childList: true, subtree: true,
+                        attributes: true, attributeFilter: ['src', 'srcset', 'href', 'style']
+                    });
+                })();
+                """;
+
+            webEngine.executeScript(script);
+
+        } catch (Exception e) {
+            System.err.println("Failed to install resource observer: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called from the page with start tags of resource elements scripts added or changed.
+     * Resources the page does not have yet are added and measured, nothing is parsed again.
+     *
+     * @param tags Start tags separated by new lines
+     */
+    public void onResourcesAdded(String tags) {
+        if (currentWebPage == null) {
+            return;
+        }
+
+        java.util.List<Resource> added = currentWebPage.addResourcesFromHTML(tags);
+        if (added.isEmpty()) {
+            return;
+        }
+
+        for (Resource resource : added) {
+            resource.accept(sizeCalculator);
+        }
+        System.out.println("[WebBrowserController] " + added.size() + " resource(s) added by scripts, total size now " +
+                formatBytes(sizeCalculator.getTotalSize()));
+        updateStatusBar();
+    }
+
     public void reload() {
         String currentUrl = addressBar.getUrl();
         if (currentUrl != null && !currentUrl.isEmpty()) {
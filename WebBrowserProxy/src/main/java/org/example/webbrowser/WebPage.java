@@ -1,14 +1,25 @@
 package org.example.webbrowser;
 
 import org.example.webbrowser.factory_template.*;
+import org.example.webbrowser.fetch.HtmlResourceScanner;
+import org.example.webbrowser.fetch.ResourceReference;
 import org.example.webbrowser.proxy.IImage;
 import org.example.webbrowser.visitor.ImageResourceAdapter;
 import org.example.webbrowser.visitor.ResourceVisitor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WebPage {
     private List<HTMLFile> htmlResources;
@@ -24,6 +35,16 @@ public class WebPage {
     // Factory Method Pattern: використовуємо Creator
     private ResourceCreator resourceCreator;
 
+    private final HtmlResourceScanner scanner = new HtmlResourceScanner();
+
+    private static final int DEFAULT_LOAD_CONCURRENCY = Integer.getInteger("webbrowser.page.loadConcurrency", 8);
+
+    // Shared by all pages, each load limits itself to its own number of workers
+    private static ExecutorService resourceLoader;
+
+    // URLs that already have a resource, so incremental updates add each one once
+    private final Set<String> knownUrls = new HashSet<>();
+
     public WebPage() {
         this.htmlResources = new ArrayList<>();
         this.cssResources = new ArrayList<>();
@@ -79,54 +100,57 @@ public class WebPage {
         // Clear previous resources
         clearResources();
 
-        // Extract and create CSS resources
-        extractResources(
-                "<link[^>]*href=[\"']([^\"']*\\.css)[\"'][^>]*>",
-                "CSS"
-        );
-
-        // Extract and create JS resources
-        extractResources(
-                "<script[^>]*src=[\"']([^\"']*\\.js)[\"'][^>]*>",
-                "JavaScript"
-        );
-
-        // Extract and create image resources
-        extractResources(
-                "<img[^>]*src=[\"']([^\"']*\\.(jpg|jpeg|png|gif|bmp|webp|svg))[\"'][^>]*>",
-                "Image"
-        );
+        // One pass over the document finds every kind of resource
+        extractResources(scanner.scan(rawHTML));
 
         // Create main HTML resource
         createMainHTMLResource();
     }
 
     /**
-     * Helper method to extract resources using regex pattern
+     * Adds resources from markup that appeared after the page was parsed (e.g. elements
+     * inserted by scripts). URLs the page already has are skipped.
      *
-     * @param regexPattern Regex pattern to match resources
-     * @param resourceTypeName Name of resource type for logging
+     * @param html Markup of the new elements, start tags are enough
+     * @return Resources that were not part of the page yet
      */
-    private void extractResources(String regexPattern, String resourceTypeName) {
-        Pattern pattern = Pattern.compile(regexPattern, Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(rawHTML);
+    public List<Resource> addResourcesFromHTML(String html) {
+        if (html == null || html.isEmpty()) {
+            return List.of();
+        }
+        int before = allResources.size();
+        extractResources(scanner.scan(html));
+        return new ArrayList<>(allResources.subList(before, allResources.size()));
+    }
 
-        int count = 0;
-        while (matcher.find()) {
-            String resourcePath = matcher.group(1);
-            String fileName = extractFileName(resourcePath);
+    /**
+     * Creates resources for scanned references, each URL once
+     *
+     * @param references References in document order
+     */
+    private void extractResources(List<ResourceReference> references) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+
+        for (ResourceReference reference : references) {
+            String resourcePath = reference.getUrl().trim();
+            if (resourcePath.isEmpty() || resourcePath.startsWith("data:") || resourcePath.startsWith("#")
+                    || !knownUrls.add(resourcePath)) {
+                continue;
+            }
 
-            Resource resource = resourceCreator.createResource(fileName, resourcePath);
+            Resource resource = resourceCreator.createResource(reference);
+            if (resource == null) {
+                continue;
+            }
             allResources.add(resource);
 
             // Add to specific lists for backward compatibility
             addToSpecificList(resource);
-            count++;
+            counts.merge(resource.getResourceType(), 1, Integer::sum);
         }
 
-        if (count > 0) {
-            System.out.println("[WebPage] Found " + count + " " + resourceTypeName + " resource(s)");
-        }
+        counts.forEach((type, count) ->
+                System.out.println("[WebPage] Found " + count + " " + type + " resource(s)"));
     }
 
     /**
@@ -166,6 +190,7 @@ public class WebPage {
      * Clears all resource lists
      */
     private void clearResources() {
+        knownUrls.clear();
         allResources.clear();
         cssResources.clear();
         jsResources.clear();
@@ -174,22 +199,127 @@ public class WebPage {
     }
 
     /**
-     * Loads all resources using unified interface
+     * Loads all resources using unified interface, waits until every one is done
      * Factory Method Pattern: all resources implement same interface
      */
     public void loadResources() {
-        int loaded = 0;
+        loadResourcesAsync().join();
+    }
+
+    /**
+     * Loads resources in parallel with the default cap (-Dwebbrowser.page.loadConcurrency)
+     *
+     * @return Future completed with the status of every resource
+     */
+    public CompletableFuture<List<ResourceLoadResult>> loadResourcesAsync() {
+        return loadResourcesAsync(DEFAULT_LOAD_CONCURRENCY);
+    }
+
+    /**
+     * Loads resources in parallel through Resource.loadAsync(), at most maxConcurrency at a time.
+     * Images are skipped (lazy loading, Proxy pattern), resources that already have
+     * content (the main HTML) are not read again.
+     *
+     * @param maxConcurrency Resources loaded at the same time
+     * @return Future completed with the status of every resource, in page order, once all are done
+     */
+    public CompletableFuture<List<ResourceLoadResult>> loadResourcesAsync(int maxConcurrency) {
+        List<Resource> resources = new ArrayList<>(allResources);
+        ResourceLoadResult[] results = new ResourceLoadResult[resources.size()];
+        AtomicInteger next = new AtomicInteger();
+
+        // Each chain starts the next load when its previous one completes, so at most
+        // maxConcurrency loads are running and no thread waits for a file
+        int chains = Math.max(1, Math.min(maxConcurrency, resources.size()));
+        CompletableFuture<?>[] running = new CompletableFuture<?>[chains];
+        for (int c = 0; c < chains; c++) {
+            running[c] = loadNext(resources, results, next);
+        }
+
+        long startTime = System.currentTimeMillis();
+        return CompletableFuture.allOf(running).thenApply(ignored -> {
+            List<ResourceLoadResult> list = Arrays.asList(results);
+            printLoadSummary(list, System.currentTimeMillis() - startTime);
+            return list;
+        });
+    }
+
+    /**
+     * Cancels resource loads of this page that are still running, e.g. when the user leaves it
+     */
+    public void cancelResourceLoading() {
         for (Resource resource : allResources) {
-            // Skip images as they use lazy loading (Proxy pattern)
-            if (!resource.getResourceType().equals("IMAGE")) {
-                resource.load();
+            resource.cancel();
+        }
+    }
+
+    private CompletableFuture<Void> loadNext(List<Resource> resources, ResourceLoadResult[] results, AtomicInteger next) {
+        int i = next.getAndIncrement();
+        while (i < resources.size() && resources.get(i).getResourceType().equals("IMAGE")) {
+            // Images load lazily (Proxy pattern) when displayed
+            results[i] = new ResourceLoadResult(resources.get(i), ResourceLoadResult.Status.SKIPPED, null, 0);
+            i = next.getAndIncrement();
+        }
+        if (i >= resources.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        int index = i;
+        Resource resource = resources.get(index);
+        long start = System.currentTimeMillis();
+        return resource.loadAsync(getResourceLoader()).toCompletableFuture()
+                .handle((loaded, error) -> {
+                    results[index] = toResult(resource, error, System.currentTimeMillis() - start);
+                    return null;
+                })
+                // Async, so a run of already loaded resources does not nest on the stack
+                .thenComposeAsync(ignored -> loadNext(resources, results, next), getResourceLoader());
+    }
+
+    private static ResourceLoadResult toResult(Resource resource, Throwable error, long duration) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error == null) {
+            return new ResourceLoadResult(resource, ResourceLoadResult.Status.LOADED, null, duration);
+        }
+        if (error instanceof CancellationException) {
+            return new ResourceLoadResult(resource, ResourceLoadResult.Status.CANCELLED, null, duration);
+        }
+        return new ResourceLoadResult(resource, ResourceLoadResult.Status.FAILED, error, duration);
+    }
+
+    private static synchronized ExecutorService getResourceLoader() {
+        if (resourceLoader == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            resourceLoader = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "resource-loader-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return resourceLoader;
+    }
+
+    private void printLoadSummary(List<ResourceLoadResult> results, long elapsed) {
+        int loaded = 0;
+        int failed = 0;
+        int cancelled = 0;
+        long slowest = 0;
+        for (ResourceLoadResult result : results) {
+            if (result.getStatus() == ResourceLoadResult.Status.LOADED) {
                 loaded++;
-            } else {
-                System.out.println("[WebPage] Skipping image (lazy loading): " + resource.getFileName());
+            } else if (result.getStatus() == ResourceLoadResult.Status.FAILED) {
+                failed++;
+            } else if (result.getStatus() == ResourceLoadResult.Status.CANCELLED) {
+                cancelled++;
             }
+            slowest = Math.max(slowest, result.getDurationMillis());
         }
 
-        System.out.println("[WebPage] Successfully loaded " + loaded + " resources (images excluded - lazy loading)");
+        System.out.println("[WebPage] Successfully loaded " + loaded + " resources (images excluded - lazy loading)" +
+                (failed > 0 ? ", " + failed + " failed" : "") + (cancelled > 0 ? ", " + cancelled + " cancelled" : "") +
+                " in " + elapsed + " ms, slowest " + slowest + " ms");
     }
 
     /**
@@ -203,17 +333,6 @@ public class WebPage {
         }
     }
 
-    /**
-     * Extracts filename from path
-     *
-     * @param path Full path or URL
-     * @return Filename only
-     */
-    private String extractFileName(String path) {
-        int lastSlash = path.lastIndexOf('/');
-        return lastSlash >= 0 ? path.substring(lastSlash + 1) : path;
-    }
-
     /**
      * Allows visitor to visit all resources
      *
@@ -1,26 +1,105 @@
 package org.example.webbrowser;
 
+import org.example.webbrowser.cache.BlobStore;
+import org.example.webbrowser.cache.CacheEntry;
+import org.example.webbrowser.cache.CacheIndex;
+import org.example.webbrowser.cache.CachePolicy;
+import org.example.webbrowser.cache.CacheServer;
+import org.example.webbrowser.cache.PageManifest;
+import org.example.webbrowser.chain.HTTPHandlerChain;
+import org.example.webbrowser.fetch.CancellationToken;
+import org.example.webbrowser.fetch.DecodedBody;
+import org.example.webbrowser.fetch.FetchProgressListener;
+import org.example.webbrowser.fetch.HtmlCharset;
+import org.example.webbrowser.fetch.HostConcurrencyLimiter;
+import org.example.webbrowser.fetch.HtmlResourceScanner;
+import org.example.webbrowser.fetch.HttpClientPool;
+import org.example.webbrowser.fetch.PriorityDownloadExecutor;
+import org.example.webbrowser.fetch.ResourcePriority;
+import org.example.webbrowser.fetch.ResourceReference;
+import org.example.webbrowser.fetch.SingleFlight;
+
 import java.io.*;
 import java.net.*;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-import java.util.regex.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
 
 /**
  * Web page fetcher that downloads HTML and all its resources (CSS, JS, images)
  */
 public class WebPageFetcher {
+    /**
+     * Max number of parallel downloads across all hosts, can be changed with -Dwebbrowser.fetch.threads=N.
+     * How many of them go to one host is decided by HostConcurrencyLimiter.
+     */
+    private static final int DEFAULT_THREADS = Integer.getInteger("webbrowser.fetch.threads", 16);
+
+    private static ExecutorService defaultExecutor;
+
+    /**
+     * Single low-priority thread for stale-while-revalidate refreshes
+     */
+    private static ExecutorService refreshExecutor;
+    private static final Set<String> refreshingUrls = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Resource downloads of every fetcher in the process, so pages, tabs and background
+     * refreshes that need the same URL at the same time share one download
+     */
+    private static final SingleFlight<StoredResource> downloads = new SingleFlight<>();
+
     private String baseUrl;
     private String outputDir;
     private Set<String> downloadedResources;
     private String indexHtmlPath;
     private String protocol;
     private String host;
+    private ExecutorService executor;
+    private HtmlResourceScanner scanner;
+    private HttpClientPool httpPool;
+    private CacheIndex cacheIndex;
+    private HTTPHandlerChain handlerChain;
+    private CompletableFuture<String> completion = new CompletableFuture<>();
+    private CancellationToken cancellation;
+    private FetchProgressListener progress = FetchProgressListener.NONE;
+    private AtomicInteger finishedResources = new AtomicInteger();
 
+    /**
+     * Charset of the page's bytes. Pages are scanned and saved as raw bytes,
+     * only URLs are decoded with it
+     */
+    private Charset pageCharset = StandardCharsets.UTF_8;
+    private boolean declarePageCharset;
+
+    /**
+     * @param url Page URL
+     * @param outputDir Domain folder inside the cache root (e.g. ./browser_cache/example_com)
+     */
     public WebPageFetcher(String url, String outputDir) {
+        this(url, outputDir, getDefaultExecutor());
+    }
+
+    public WebPageFetcher(String url, String outputDir, ExecutorService executor) {
+        this(url, outputDir, executor, CacheIndex.forDirectory(Paths.get(outputDir).toAbsolutePath().normalize().getParent()));
+    }
+
+    public WebPageFetcher(String url, String outputDir, ExecutorService executor, CacheIndex cacheIndex) {
         this.baseUrl = url;
         this.outputDir = outputDir;
-        this.downloadedResources = new HashSet<>();
+        this.executor = executor;
+        this.cacheIndex = cacheIndex;
+        this.handlerChain = new HTTPHandlerChain();
+        this.scanner = new HtmlResourceScanner();
+        this.httpPool = HttpClientPool.shared();
+        this.downloadedResources = ConcurrentHashMap.newKeySet();
 
         try {
             URL urlObj = new URL(url);
@@ -33,280 +112,1057 @@ public class WebPageFetcher {
     }
 
     /**
-     * Fetches page and all resources, returns path to index.html
+     * Shared bounded pool for resource downloads (daemon threads, so it never blocks app exit).
+     * Its queue hands out render-blocking downloads first.
+     */
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            defaultExecutor = new PriorityDownloadExecutor(DEFAULT_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "resource-fetcher-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return defaultExecutor;
+    }
+
+    private static synchronized ExecutorService getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-refresher");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Fetches page and all resources, returns path to the saved HTML file.
+     * Every URL has its own cache entry; the root page of a site is saved as index.html.
+     * A fresh cached page is returned without any network request.
      */
     public String fetchAndSave() throws IOException {
+        return fetchAndSave(true, false);
+    }
+
+    /**
+     * Same as fetchAndSave(), but returns as soon as stylesheets and parser-blocking scripts are saved.
+     * Images, fonts and async scripts keep downloading in background; until then the saved page
+     * points to their network URLs. The page is saved again when they are done, see getCompletion().
+     *
+     * @return Path to the saved HTML file
+     */
+    public String fetchRenderBlocking() throws IOException {
+        return fetchAndSave(true, true);
+    }
+
+    /**
+     * @return Future completed with the HTML path when every resource of the page is cached
+     */
+    public CompletableFuture<String> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Ties every request of this fetch to a navigation. Cancelling the token aborts running
+     * downloads and skips queued ones. Without a token the fetch has its own page deadline,
+     * counted from the start of the fetch.
+     *
+     * @param cancellation Token of the navigation
+     */
+    public synchronized void setCancellationToken(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    public synchronized CancellationToken getCancellationToken() {
+        // Created only when nobody injected one, its deadline timer would run for nothing otherwise
+        if (cancellation == null) {
+            cancellation = CancellationToken.forNavigation();
+        }
+        return cancellation;
+    }
+
+    /**
+     * @return Charset the saved page is encoded in, known once the page was fetched or taken from cache
+     */
+    public Charset getPageCharset() {
+        return pageCharset;
+    }
+
+    /**
+     * @param progress Receives progress updates from download threads
+     */
+    public void setProgressListener(FetchProgressListener progress) {
+        this.progress = progress != null ? progress : FetchProgressListener.NONE;
+    }
+
+    private void reportProgress(String message) {
+        progress.onProgress(message, finishedResources.get(), scheduledUrls.size());
+    }
+
+    /**
+     * @param useFreshCopy false to skip freshness check and always revalidate (background refresh)
+     * @param returnEarly true to return once render-blocking resources are saved
+     */
+    private String fetchAndSave(boolean useFreshCopy, boolean returnEarly) throws IOException {
+        getCancellationToken();
+        try {
+            return fetchPage(useFreshCopy, returnEarly);
+        } catch (IOException | RuntimeException e) {
+            completion.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private String fetchPage(boolean useFreshCopy, boolean returnEarly) throws IOException {
         // Create output directory
         Files.createDirectories(Paths.get(outputDir));
 
-        // Check if page is already cached
-        Path cachedHtml = Paths.get(outputDir, "index.html");
-        if (Files.exists(cachedHtml)) {
-            System.out.println("Loading from cache: " + outputDir);
-            indexHtmlPath = cachedHtml.toAbsolutePath().toString();
-            return indexHtmlPath;
+        String pageKey = CacheIndex.normalizeUrl(baseUrl);
+        CacheEntry cachedPage = cacheIndex.get(pageKey);
+        if (cachedPage != null && !isSavedPage(cachedPage)) {
+            System.out.println("Cached copy is not a saved page, fetching it again: " + cachedPage.getLocalPath());
+            cachedPage = null;
         }
 
-        System.out.println("Fetching page: " + baseUrl);
+        if (cachedPage != null && useFreshCopy) {
+            CachePolicy.Freshness freshness = CachePolicy.getFreshness(cachedPage, System.currentTimeMillis());
+            if (freshness == CachePolicy.Freshness.FRESH) {
+                System.out.println("Fresh in cache, no request needed: " + cachedPage.getLocalPath());
+                return useCachedPage(cachedPage);
+            }
+            if (freshness == CachePolicy.Freshness.STALE_WHILE_REVALIDATE) {
+                System.out.println("Serving stale copy, refreshing in background: " + cachedPage.getLocalPath());
+                refreshInBackground(baseUrl, () -> new WebPageFetcher(baseUrl, outputDir, executor, cacheIndex).fetchAndSave(false, false));
+                return useCachedPage(cachedPage);
+            }
+        }
 
-        // Fetch main HTML
-        String html = fetchResource(baseUrl);
+        System.out.println((cachedPage != null ? "Revalidating page: " : "Fetching page: ") + baseUrl);
+        reportProgress(cachedPage != null ? "Revalidating page" : "Fetching page");
+        long startTime = System.currentTimeMillis();
+
+        // Fetch main HTML; if this exact page is cached, ask the server whether it changed
+        StoredResource response;
+        try {
+            response = fetchResource(baseUrl, cachedPage);
+        } catch (IOException e) {
+            cancellation.throwIfCancelled();
+            if (cachedPage == null) {
+                throw e;
+            }
+            System.out.println("Revalidation failed (" + e.getMessage() + "), loading from cache");
+            return useCachedPage(cachedPage);
+        }
+
+        if (response == null) {
+            System.out.println("Not modified, loading from cache: " + cachedPage.getLocalPath());
+            cachedPage.setFetchTime(System.currentTimeMillis());
+            cacheIndex.save();
+            return useCachedPage(cachedPage);
+        }
+
+        cancellation.throwIfCancelled();
+        String html = response.text;
 
         if (html == null || html.trim().isEmpty()) {
             throw new IOException("Failed to fetch HTML content");
         }
 
-        System.out.println("HTML fetched, length: " + html.length());
+        System.out.println("HTML fetched, " + html.length() + " bytes, charset " + pageCharset);
 
-        // Download resources in order of importance
+        // Single scan finds every resource, then all of them are queued at once by priority
+        List<ResourceReference> references = scanner.scan(html);
+        Map<String, ResourceRef> resources = discoverResources(baseUrl, references, pageCharset);
+        System.out.println("Discovered " + resources.size() + " resources");
+        reportProgress("Downloading resources");
 
-        // 1. CSS files (multiple patterns)
-        html = downloadAndReplaceResources(html,
-                "<link[^>]*href=[\"']([^\"']+\\.css[^\"']*)[\"'][^>]*>",
-                "css", "link");
-        html = downloadAndReplaceResources(html,
-                "@import\\s+url\\([\"']?([^\"')]+\\.css[^\"')]*)[\"']?\\)",
-                "css", "import");
+        List<ResourceRef> renderBlocking = new ArrayList<>();
+        List<ResourceRef> deferred = new ArrayList<>();
+        for (ResourceRef resource : resources.values()) {
+            (resource.priority.isRenderBlocking() ? renderBlocking : deferred).add(resource);
+        }
 
-        // 2. JavaScript files (multiple patterns)
-        html = downloadAndReplaceResources(html,
-                "<script[^>]*src=[\"']([^\"']+\\.js[^\"']*)[\"'][^>]*>",
-                "js", "script");
+        Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> renderBlockingDownloads = submitAll(renderBlocking, counters);
+        CompletableFuture<Void> deferredDownloads = submitInBackground(deferred, counters);
+        awaitAll(renderBlockingDownloads);
+        cancellation.throwIfCancelled();
+        System.out.println("Render-blocking resources done in " + (System.currentTimeMillis() - startTime) + " ms");
+
+        // Fonts and images used by the downloaded stylesheets, so the page renders offline
+        fetchStylesheetResources();
+
+        Path cachedHtml = Paths.get(outputDir, getPageFileName(pageKey));
+        String pageHtml = html;
+
+        // A no-store page is saved once, only to be shown; the browser discards it after rendering
+        boolean noStore = CachePolicy.isNoStore(response.headers);
+        if (returnEarly && !noStore && !deferredDownloads.isDone()) {
+            savePage(pageHtml, references, cachedHtml, pageKey, response);
+            deferredDownloads.thenRun(() -> {
+                try {
+                    // Also after cancellation, the page then uses whatever was downloaded until then
+                    savePage(pageHtml, references, cachedHtml, pageKey, response);
+                    printSummary(counters, startTime);
+                    if (cancellation.isCancelled()) {
+                        completion.completeExceptionally(new InterruptedIOException(
+                                "Navigation cancelled: " + cancellation.getReason()));
+                    } else {
+                        reportProgress("Done");
+                        completion.complete(indexHtmlPath);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Failed to save page after background downloads: " + e.getMessage());
+                    completion.completeExceptionally(e);
+                }
+            });
+            System.out.println("Page shown early, " + deferred.size() + " resources continue in background");
+            reportProgress("Page shown, loading remaining resources");
+            return indexHtmlPath;
+        }
 
-        // 3. Images (multiple formats and patterns)
-        html = downloadAndReplaceResources(html,
-                "<img[^>]*src=[\"']([^\"']+\\.(jpg|jpeg|png|gif|svg|webp|ico|bmp)[^\"']*)[\"'][^>]*>",
-                "images", "img");
+        awaitAll(List.of(deferredDownloads));
+        cancellation.throwIfCancelled();
+        // A deferred URL may still turn out to be a stylesheet (by Content-Type)
+        fetchStylesheetResources();
+        savePage(pageHtml, references, cachedHtml, pageKey, response);
+        printSummary(counters, startTime);
+        reportProgress("Done");
+        completion.complete(indexHtmlPath);
 
-        // 4. Background images in style attributes
-        html = downloadAndReplaceResources(html,
-                "url\\([\"']?([^\"')]+\\.(jpg|jpeg|png|gif|svg|webp)[^\"')]*)[\"']?\\)",
-                "images", "bg");
+        return indexHtmlPath;
+    }
 
-        // 5. Link rel icons (favicon, apple-touch-icon, etc)
-        html = downloadAndReplaceResources(html,
-                "<link[^>]*rel=[\"'](?:icon|shortcut icon|apple-touch-icon)[\"'][^>]*href=[\"']([^\"']+)[\"'][^>]*>",
-                "images", "icon");
+    /**
+     * Rewrites HTML to local paths and saves it with its manifest and index entry.
+     * Resources that are not downloaded yet are pointed to their absolute network URL.
+     */
+    private synchronized void savePage(String html, List<ResourceReference> references, Path cachedHtml,
+                                       String pageKey, StoredResource response) throws IOException {
+        // Rewrite HTML in one pass
+        html = HtmlResourceScanner.rewrite(html, references, this::getLocalPathForReference);
 
-        // 6. Fonts
-        html = downloadAndReplaceResources(html,
-                "url\\([\"']?([^\"')]+\\.(woff2?|ttf|eot|otf)[^\"')]*)[\"']?\\)",
-                "fonts", "font");
+        // Charset declaration, <base> pointed to the cache server
+        html = addHeadTags(html);
 
-        // Add base tag to HTML for proper relative URL resolution
-        html = addBaseTag(html);
+        // Temp file + rename, the early version may be open in the browser while it is replaced
+        Path tempFile = cachedHtml.resolveSibling(cachedHtml.getFileName() + ".tmp");
+        try {
+            Files.write(tempFile, html.getBytes(StandardCharsets.ISO_8859_1));
+            Files.move(tempFile, cachedHtml, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        PageManifest.write(cachedHtml, getManifestEntries(scheduledUrls));
 
-        // Save modified HTML
-        Files.write(cachedHtml, html.getBytes());
+        CacheEntry entry = createEntry(pageKey, cachedHtml, response.headers, response.wireSize);
+        // The saved bytes may differ from the original encoding (UTF-16 is converted)
+        entry.setContentType(getMimeType(entry.getContentType(), "text/html") + "; charset=" + pageCharset.name());
+        cacheIndex.put(entry);
+        cacheIndex.save();
 
         indexHtmlPath = cachedHtml.toAbsolutePath().toString();
+    }
+
+    private void printSummary(Map<String, AtomicInteger> counters, long startTime) {
+        counters.forEach((type, count) ->
+                System.out.println("[" + type + "] Total downloaded: " + count.get()));
 
         System.out.println("\n=== Download Summary ===");
         System.out.println("Total resources downloaded: " + downloadedResources.size());
+        System.out.println("Resources reused from cache: " + reusedResources.size());
+        System.out.println("Downloads shared with other fetches (all pages so far): " + downloads.getSharedCount());
+        if (cancellation.isCancelled()) {
+            System.out.println("Resources aborted (" + cancellation.getReason() + "): " + abortedResources.get());
+        }
         System.out.println("Index.html saved at: " + indexHtmlPath);
+        System.out.println("Page fetched in " + (System.currentTimeMillis() - startTime) + " ms");
+        cacheIndex.getBlobStore().printReport(cacheIndex);
+        httpPool.getMetrics().printReport();
+        httpPool.getLimiter().printReport();
+    }
 
+    /**
+     * Runs refresh on the background thread, at most one refresh per URL at a time
+     */
+    private void refreshInBackground(String url, Callable<?> refresh) {
+        if (!refreshingUrls.add(url)) {
+            return;
+        }
+
+        getRefreshExecutor().execute(() -> {
+            try {
+                refresh.call();
+                cacheIndex.save();
+            } catch (Exception e) {
+                System.err.println("Background refresh failed: " + url + " - " + e.getMessage());
+            } finally {
+                refreshingUrls.remove(url);
+            }
+        });
+    }
+
+    private String useCachedPage(CacheEntry cachedPage) {
+        cachedPage.touch();
+        indexHtmlPath = cacheIndex.resolve(cachedPage).toString();
+        try {
+            pageCharset = HtmlCharset.sniff(Paths.get(indexHtmlPath), cachedPage.getContentType()).getCharset();
+        } catch (IOException e) {
+            System.err.println("Failed to read charset of cached page: " + e.getMessage());
+        }
+        reportProgress("Loaded from cache");
+        completion.complete(indexHtmlPath);
         return indexHtmlPath;
     }
 
     /**
-     * Adds base tag to HTML for proper relative URL resolution
+     * The page is served by the cache server under its own path, so relative URLs resolve
+     * without help; a <base> of the page itself is pointed to the server too.
+     * A charset that came from the Content-Type header is declared in a meta tag,
+     * the saved file may be opened without that header.
      */
-    private String addBaseTag(String html) {
-        // Check if base tag already exists
-        if (html.contains("<base")) {
-            return html;
+    private String addHeadTags(String html) {
+        Matcher base = RegexPatterns.BASE_HREF.matcher(html);
+        if (base.find()) {
+            String href = resolveUrl(baseUrl, decodeUrl(base.group(2), pageCharset));
+            String localPath = CacheServer.toLocalPath(href);
+            if (localPath != null) {
+                html = html.substring(0, base.start(2)) + localPath + html.substring(base.end(2));
+            }
         }
 
-        // Add base tag after <head>
-        String baseTag = "<base href=\"" + protocol + "://" + host + "/\">";
-        html = html.replaceFirst("(<head[^>]*>)", "$1\n" + baseTag);
+        if (declarePageCharset) {
+            String meta = "\n<meta charset=\"" + pageCharset.name() + "\">";
+            Matcher head = RegexPatterns.HEAD_OPEN_TAG.matcher(html);
+            if (head.find()) {
+                html = html.substring(0, head.end()) + meta + html.substring(head.end());
+            }
+        }
 
         return html;
     }
 
-    private String downloadAndReplaceResources(String html, String regex, String folder, String type) {
-        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(html);
-        StringBuffer result = new StringBuffer();
+    /**
+     * False for the original bytes the LAN proxy stored for its clients, and for pages
+     * saved in the old format
+     */
+    private boolean isSavedPage(CacheEntry page) {
+        return !BlobStore.isBlobPath(page.getLocalPath()) && !usesFilePaths(cacheIndex.resolve(page));
+    }
 
-        int count = 0;
+    /**
+     * Pages saved before the cache server pointed to their blobs by file paths ("../blobs/...")
+     * and rely on a <base> of the remote site, they do not work when served over HTTP
+     */
+    private static boolean usesFilePaths(Path page) {
+        try {
+            return new String(Files.readAllBytes(page), StandardCharsets.ISO_8859_1)
+                    .contains("../" + BlobStore.BLOBS_DIR + "/");
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-        while (matcher.find()) {
-            String resourceUrl = matcher.group(1);
+    private static String getMimeType(String contentType, String defaultType) {
+        if (contentType == null || contentType.isBlank()) {
+            return defaultType;
+        }
+        int semicolon = contentType.indexOf(';');
+        return (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim();
+    }
+
+    /**
+     * Collects resource URLs from scanned references that are not scheduled yet.
+     * The first reference to a URL decides its type.
+     *
+     * @param documentUrl URL of the HTML or CSS the references were found in
+     * @param charset Charset of the document, to decode non-ASCII URLs
+     */
+    private Map<String, ResourceRef> discoverResources(String documentUrl, List<ResourceReference> references, Charset charset) {
+        Map<String, ResourceRef> resources = new LinkedHashMap<>();
 
-            // Skip data URLs, empty URLs, blob URLs, and already local paths
-            if (resourceUrl.startsWith("data:") ||
-                    resourceUrl.startsWith("blob:") ||
-                    resourceUrl.trim().isEmpty() ||
-                    resourceUrl.startsWith("file://") ||
-                    resourceUrl.startsWith("#")) {
-                matcher.appendReplacement(result, Matcher.quoteReplacement(matcher.group(0)));
+        for (ResourceReference reference : references) {
+            if (isSkippedUrl(reference.getUrl())) {
                 continue;
             }
 
-            // Resolve full URL
-            String fullUrl = resolveUrl(baseUrl, resourceUrl);
+            String fullUrl = resolveUrl(documentUrl, decodeUrl(reference.getUrl(), charset));
+            ResourceRef known = resources.get(fullUrl);
+            if (known != null) {
+                // Same URL used in a more important place (e.g. lazy image also shown above the fold)
+                resources.put(fullUrl, known.withPriority(reference.getPriority()));
+            } else if (scheduledUrls.add(fullUrl)) {
+                resources.put(fullUrl, new ResourceRef(fullUrl, reference.getType(),
+                        "css".equals(reference.getFolder()), reference.getPriority()));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * Downloads url() and @import targets of stylesheets fetched by the previous wave.
+     * Each wave runs in parallel; stylesheets found by a wave (nested @import) start the next one.
+     * Stylesheets are then rewritten to local blob paths, imported ones before those importing them.
+     */
+    private void fetchStylesheetResources() throws IOException {
+        List<PendingStylesheet> stylesheets = new ArrayList<>();
+
+        while (!pendingStylesheets.isEmpty()) {
+            cancellation.throwIfCancelled();
+            List<PendingStylesheet> wave = new ArrayList<>();
+            PendingStylesheet pending;
+            while ((pending = pendingStylesheets.poll()) != null) {
+                wave.add(pending);
+            }
+
+            Map<String, ResourceRef> subResources = new LinkedHashMap<>();
+            for (PendingStylesheet stylesheet : wave) {
+                scanner.scanCss(stylesheet.css, 0, stylesheet.css.length(), stylesheet.references);
+                subResources.putAll(discoverResources(stylesheet.url, stylesheet.references, StandardCharsets.UTF_8));
+            }
+            stylesheets.addAll(wave);
+
+            if (!subResources.isEmpty()) {
+                System.out.println("Discovered " + subResources.size() + " resources in " + wave.size() + " stylesheets");
+                downloadAll(subResources.values());
+            }
+        }
+
+        for (int i = stylesheets.size() - 1; i >= 0; i--) {
+            PendingStylesheet stylesheet = stylesheets.get(i);
+            try {
+                storeStylesheet(stylesheet);
+            } catch (IOException e) {
+                System.err.println("[css] Failed to save: " + stylesheet.url + " - " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rewrites stylesheet references to cache server paths and saves it with a manifest of
+     * the blobs behind them. References that could not be downloaded keep their original URL.
+     */
+    private void storeStylesheet(PendingStylesheet stylesheet) throws IOException {
+        Map<String, String> subResources = new LinkedHashMap<>();
+
+        String css = HtmlResourceScanner.rewrite(stylesheet.css, stylesheet.references, reference -> {
+            if (isSkippedUrl(reference.getUrl())) {
+                return null;
+            }
+            String fullUrl = resolveUrl(stylesheet.url, decodeUrl(reference.getUrl(), StandardCharsets.UTF_8));
+            CacheEntry entry = cacheIndex.get(fullUrl);
+            if (entry == null || !urlToLocalPathMap.containsKey(fullUrl) || !BlobStore.isBlobPath(entry.getLocalPath())) {
+                return null;
+            }
+            subResources.put(entry.getUrl(), entry.getLocalPath());
+            return CacheServer.toLocalPath(entry.getUrl());
+        });
+
+        // ISO-8859-1 maps every byte to one char, so non-ASCII content is written back unchanged
+        Path blob = cacheIndex.getBlobStore().store(
+                new ByteArrayInputStream(css.getBytes(StandardCharsets.ISO_8859_1)), ".css");
+        PageManifest.write(blob, subResources);
+
+        cacheIndex.put(createEntry(stylesheet.key, blob, stylesheet.headers, stylesheet.wireSize));
+        markLocal(stylesheet.url);
+    }
+
+    /**
+     * Checks that every blob a cached stylesheet points to (also through nested @import)
+     * is still on disk, and remembers them for the page manifest.
+     * Stylesheets cached without a manifest were never rewritten and must be downloaded again,
+     * as must stylesheets that point to blobs by file paths ("../<aa>/<hash>").
+     *
+     * @return true if the cached stylesheet renders offline
+     */
+    private boolean collectStylesheetBlobs(Path stylesheet, Set<Path> visited) {
+        if (!visited.add(stylesheet)) {
+            return true;
+        }
+        if (!Files.exists(PageManifest.forPage(stylesheet))) {
+            return false;
+        }
 
-            // Skip if already downloaded
-            if (downloadedResources.contains(fullUrl)) {
-                // Find local path for this URL
-                String localPath = getLocalPathForUrl(fullUrl, folder);
-                if (localPath != null) {
-                    matcher.appendReplacement(result,
-                            Matcher.quoteReplacement(matcher.group(0).replace(resourceUrl, localPath)));
+        try {
+            Map<String, String> subResources = PageManifest.read(stylesheet);
+            if (!subResources.isEmpty() && pointsToBlobFiles(stylesheet, subResources.values().iterator().next())) {
+                return false;
+            }
+            for (Map.Entry<String, String> subResource : subResources.entrySet()) {
+                Path blob = cacheIndex.getRoot().resolve(subResource.getValue());
+                if (!Files.exists(blob)) {
+                    return false;
+                }
+                if (blob.toString().endsWith(".css") && !collectStylesheetBlobs(blob, visited)) {
+                    return false;
+                }
+                stylesheetBlobs.put(subResource.getKey(), subResource.getValue());
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean pointsToBlobFiles(Path stylesheet, String blobPath) throws IOException {
+        String fileReference = "../" + blobPath.substring(BlobStore.BLOBS_DIR.length() + 1);
+        return new String(Files.readAllBytes(stylesheet), StandardCharsets.ISO_8859_1).contains(fileReference);
+    }
+
+    /**
+     * Downloads all resources using the executor and waits until every download is done.
+     * Failed downloads are logged and point to their network URL in HTML.
+     */
+    private void downloadAll(Collection<ResourceRef> resources) throws IOException {
+        Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+        awaitAll(submitAll(resources, counters));
+
+        counters.forEach((type, count) ->
+                System.out.println("[" + type + "] Total downloaded: " + count.get()));
+    }
+
+    private List<CompletableFuture<Void>> submitAll(Collection<ResourceRef> resources, Map<String, AtomicInteger> counters) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (ResourceRef resource : resources) {
+            futures.add(submit(resource, () -> {
+                try {
+                    downloadOne(resource, counters);
+                } finally {
+                    finishedResources.incrementAndGet();
+                    reportProgress("Downloading resources");
+                }
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * Queues downloads without waiting for them
+     *
+     * @return Future completed when the last of them has finished
+     */
+    private CompletableFuture<Void> submitInBackground(Collection<ResourceRef> resources, Map<String, AtomicInteger> counters) {
+        return CompletableFuture.allOf(submitAll(resources, counters).toArray(new CompletableFuture<?>[0]))
+                .exceptionally(e -> {
+                    System.err.println("Resource download task failed: " + e.getCause());
+                    return null;
+                });
+    }
+
+    /**
+     * Queues a download once its host has a free slot. Uses the priority queue when the executor
+     * has one, a custom executor just runs tasks in its own order.
+     */
+    private CompletableFuture<Void> submit(ResourceRef resource, Runnable task) {
+        HostConcurrencyLimiter limiter = httpPool.getLimiter();
+        String resourceHost = getHost(resource.url);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Runnable download = () -> {
+            try {
+                task.run();
+                done.complete(null);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            } finally {
+                limiter.release(resourceHost);
+            }
+        };
+
+        limiter.whenFree(resourceHost, resource.priority, () -> {
+            try {
+                if (executor instanceof PriorityDownloadExecutor) {
+                    ((PriorityDownloadExecutor) executor).submit(resource.priority, download);
                 } else {
-                    matcher.appendReplacement(result, Matcher.quoteReplacement(matcher.group(0)));
+                    executor.execute(download);
                 }
-                continue;
+            } catch (RejectedExecutionException e) {
+                limiter.release(resourceHost);
+                done.completeExceptionally(e);
             }
+        });
+        return done;
+    }
 
+    private static String getHost(String url) {
+        try {
+            return String.valueOf(URI.create(url).getHost());
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private void awaitAll(List<? extends Future<?>> futures) throws IOException {
+        for (Future<?> future : futures) {
             try {
-                String localPath = downloadResource(fullUrl, folder);
-                downloadedResources.add(fullUrl);
-                count++;
+                future.get();
+            } catch (InterruptedException e) {
+                futures.forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IOException("Resource download interrupted", e);
+            } catch (ExecutionException e) {
+                System.err.println("Resource download task failed: " + e.getCause());
+            }
+        }
+    }
 
-                // Replace in HTML
-                matcher.appendReplacement(result,
-                        Matcher.quoteReplacement(matcher.group(0).replace(resourceUrl, localPath)));
+    private void downloadOne(ResourceRef resource, Map<String, AtomicInteger> counters) {
+        if (cancellation.isCancelled()) {
+            // Queued before the navigation was cancelled
+            abortedResources.incrementAndGet();
+            return;
+        }
 
-                System.out.println("[" + type + "] Downloaded (" + count + "): " + getFilenameFromUrl(fullUrl));
+        try {
+            // Shared with other cached pages, only download it again if it changed
+            CacheEntry cached = cacheIndex.get(resource.url);
+            if (cached != null && resource.stylesheet
+                    && !collectStylesheetBlobs(cacheIndex.resolve(cached), new HashSet<>())) {
+                // Points to deleted blobs or was never rewritten, download and rewrite it again
+                cached = null;
+            }
+            if (cached != null && useCachedResource(resource.url, cached)) {
+                reusedResources.add(resource.url);
+                return;
+            }
 
-            } catch (IOException e) {
-                System.err.println("[" + type + "] Failed: " + fullUrl + " - " + e.getMessage());
-                matcher.appendReplacement(result, Matcher.quoteReplacement(matcher.group(0)));
+            if (cached == null) {
+                downloadResource(resource.url);
             }
+            downloadedResources.add(resource.url);
+
+            int count = counters.computeIfAbsent(resource.type, key -> new AtomicInteger()).incrementAndGet();
+            System.out.println("[" + resource.type + "] Downloaded (" + count + "): " + getFilenameFromUrl(resource.url));
+
+        } catch (IOException e) {
+            if (cancellation.isCancelled()) {
+                abortedResources.incrementAndGet();
+                return;
+            }
+            System.err.println("[" + resource.type + "] Failed: " + resource.url + " - " + e.getMessage());
         }
-        matcher.appendTail(result);
+    }
 
-        if (count > 0) {
-            System.out.println("[" + type + "] Total downloaded: " + count);
+    /**
+     * Local path of a downloaded resource, absolute URL of one that is not on disk (yet),
+     * or null to keep the original URL
+     */
+    private String getLocalPathForReference(ResourceReference reference) {
+        if (isSkippedUrl(reference.getUrl())) {
+            return null;
         }
+        String fullUrl = resolveUrl(baseUrl, decodeUrl(reference.getUrl(), pageCharset));
+        String localPath = getLocalPathForUrl(fullUrl);
+        return localPath != null ? localPath : encodeUrl(fullUrl, pageCharset);
+    }
 
-        return result.toString();
+    /**
+     * Documents are scanned as ISO-8859-1 views of their bytes, so a URL with non-ASCII
+     * characters holds the document's bytes and is decoded here
+     */
+    private static String decodeUrl(String rawUrl, Charset charset) {
+        if (isAscii(rawUrl)) {
+            return rawUrl;
+        }
+        return new String(rawUrl.getBytes(StandardCharsets.ISO_8859_1), charset);
     }
 
-    private Map<String, String> urlToLocalPathMap = new HashMap<>();
+    /**
+     * Turns a URL back into the document's bytes, inverse of decodeUrl()
+     */
+    private static String encodeUrl(String url, Charset charset) {
+        if (isAscii(url)) {
+            return url;
+        }
+        return new String(url.getBytes(charset), StandardCharsets.ISO_8859_1);
+    }
 
-    private String downloadResource(String url, String folder) throws IOException {
-        byte[] data = fetchBinaryResource(url);
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        // Create folder if not exists
-        Path folderPath = Paths.get(outputDir, folder);
-        Files.createDirectories(folderPath);
+    /**
+     * Skip data URLs, empty URLs, blob URLs, and already local paths
+     */
+    private boolean isSkippedUrl(String resourceUrl) {
+        return resourceUrl.startsWith("data:") ||
+                resourceUrl.startsWith("blob:") ||
+                resourceUrl.trim().isEmpty() ||
+                resourceUrl.startsWith("file://") ||
+                resourceUrl.startsWith("#");
+    }
 
-        // Generate filename
-        String filename = getFilenameFromUrl(url);
-        Path filePath = folderPath.resolve(filename);
+    private Map<String, String> urlToLocalPathMap = new ConcurrentHashMap<>();
+    private Set<String> reusedResources = ConcurrentHashMap.newKeySet();
+    private AtomicInteger abortedResources = new AtomicInteger();
 
-        // Handle duplicate filenames
-        int counter = 1;
-        while (Files.exists(filePath)) {
-            String nameWithoutExt = filename.substring(0, filename.lastIndexOf('.'));
-            String ext = filename.substring(filename.lastIndexOf('.'));
-            filename = nameWithoutExt + "_" + counter + ext;
-            filePath = folderPath.resolve(filename);
-            counter++;
-        }
+    /**
+     * Every resource URL this fetch has scheduled, from the HTML and from stylesheets
+     */
+    private Set<String> scheduledUrls = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Downloaded stylesheets whose url() / @import targets are not fetched yet
+     */
+    private Queue<PendingStylesheet> pendingStylesheets = new ConcurrentLinkedQueue<>();
 
-        // Save file
-        Files.write(filePath, data);
+    /**
+     * Blobs used by cached stylesheets that were reused as they are
+     */
+    private Map<String, String> stylesheetBlobs = new ConcurrentHashMap<>();
+
+    /**
+     * Decides whether a cached resource can be used without downloading it again.
+     * Fresh entries need no request, stale-while-revalidate entries are refreshed
+     * in background, stale entries are revalidated right away.
+     *
+     * @return true if cached copy is used, false if new content was downloaded
+     */
+    private boolean useCachedResource(String url, CacheEntry cached) {
+        CachePolicy.Freshness freshness = CachePolicy.getFreshness(cached, System.currentTimeMillis());
 
-        String localPath = folder + "/" + filename;
-        urlToLocalPathMap.put(url, localPath);
+        if (freshness == CachePolicy.Freshness.STALE) {
+            return !refreshCachedResource(url, cached);
+        }
 
-        return localPath;
+        markLocal(url);
+        cached.touch();
+
+        if (freshness == CachePolicy.Freshness.STALE_WHILE_REVALIDATE) {
+            refreshInBackground(url, () -> new WebPageFetcher(baseUrl, outputDir, executor, cacheIndex)
+                    .refreshResource(url, cached));
+        }
+        return true;
     }
 
-    private String getLocalPathForUrl(String url, String folder) {
-        return urlToLocalPathMap.get(url);
+    /**
+     * Background refresh of one resource, a changed stylesheet gets its own resources fetched too
+     */
+    private boolean refreshResource(String url, CacheEntry cached) throws IOException {
+        // Runs on a fetcher of its own, fetchAndSave() was never called on it
+        getCancellationToken();
+        scheduledUrls.add(url);
+        boolean changed = refreshCachedResource(url, cached);
+        fetchStylesheetResources();
+        return changed;
     }
 
-    private String fetchResource(String url) throws IOException {
-        HttpURLConnection conn = null;
+    /**
+     * Revalidates a resource some page already downloaded.
+     * On 304 (or when the server is unreachable) the cached file is used as is,
+     * on 200 the URL is pointed to the blob with the new content. The old blob
+     * is left alone because other pages may still use it.
+     *
+     * @return true if new content was downloaded, false if cached copy is reused
+     */
+    private boolean refreshCachedResource(String url, CacheEntry cached) {
+        markLocal(url);
+        cached.touch();
+
         try {
-            conn = (HttpURLConnection) new URL(url).openConnection();
-            conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
-            conn.setRequestProperty("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8");
-            conn.setRequestProperty("Accept-Language", "en-US,en;q=0.5");
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
-            conn.setInstanceFollowRedirects(true);
-
-            int responseCode = conn.getResponseCode();
-
-            // Handle redirects manually if needed
-            if (responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
-                    responseCode == HttpURLConnection.HTTP_MOVED_TEMP ||
-                    responseCode == HttpURLConnection.HTTP_SEE_OTHER) {
-                String newUrl = conn.getHeaderField("Location");
-                if (newUrl != null) {
-                    System.out.println("Following redirect to: " + newUrl);
-                    return fetchResource(newUrl);
-                }
+            StoredResource stored = fetchShared(url, cached.getUrl(), cached);
+            if (stored == null) {
+                cached.setFetchTime(System.currentTimeMillis());
+                return false;
             }
 
-            if (responseCode != 200) {
-                throw new IOException("HTTP response code: " + responseCode);
-            }
+            saveResource(url, cached.getUrl(), stored);
+            return true;
 
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), "UTF-8"))) {
-                StringBuilder content = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
+        } catch (IOException e) {
+            System.err.println("Revalidation failed, using cached copy: " + url + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void downloadResource(String url) throws IOException {
+        // Stream straight into the blob store
+        String key = CacheIndex.normalizeUrl(url);
+        saveResource(url, key, fetchShared(url, key, null));
+    }
+
+    /**
+     * Downloads a resource, or waits for the download of the same URL another fetcher
+     * already started. Blobs are indexed once, by whoever downloaded them.
+     *
+     * @param key Normalized URL
+     * @param cached Cached copy to revalidate, or null for unconditional request
+     * @return Stored blob (or stylesheet text), or null if the cached copy is not modified
+     */
+    private StoredResource fetchShared(String url, String key, CacheEntry cached) throws IOException {
+        // A revalidation may answer "not modified", which means nothing to a fetcher without that copy
+        String flightKey = cacheIndex.getRoot() + (cached != null ? " revalidate " : " ") + key;
+        CancellationToken cancellation = getCancellationToken();
+        return downloads.execute(flightKey, () -> {
+            try {
+                StoredResource stored = fetchBinaryResource(url, cached);
+                if (stored != null && stored.file != null) {
+                    cacheIndex.put(createEntry(key, stored.file, stored.headers, stored.wireSize));
                 }
-                return content.toString();
+                return stored;
+            } catch (IOException e) {
+                // Aborted with this fetch's navigation: fetchers waiting for it download it themselves
+                cancellation.throwIfCancelled();
+                throw e;
             }
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
+        }, cancellation);
+    }
+
+    /**
+     * Points the page to a downloaded resource. Stylesheets wait in pendingStylesheets
+     * until their own resources are downloaded and they can be rewritten.
+     */
+    private void saveResource(String url, String key, StoredResource stored) {
+        if (stored.text != null) {
+            pendingStylesheets.add(new PendingStylesheet(url, key, stored));
+            return;
+        }
+        if (stored.file == null) {
+            // no-store: an older copy must not be used either, the WebView loads it from the network
+            urlToLocalPathMap.remove(url);
+            cacheIndex.remove(key);
+            return;
+        }
+        markLocal(url);
+    }
+
+    /**
+     * Resource URL to blob path (relative to cache root) for every resource the page uses,
+     * including resources of its stylesheets
+     */
+    private Map<String, String> getManifestEntries(Collection<String> resourceUrls) {
+        Map<String, String> manifest = new LinkedHashMap<>();
+        for (String url : resourceUrls) {
+            CacheEntry entry = cacheIndex.get(url);
+            if (entry != null && urlToLocalPathMap.containsKey(url)) {
+                manifest.put(entry.getUrl(), entry.getLocalPath());
             }
         }
+        stylesheetBlobs.forEach(manifest::putIfAbsent);
+        return manifest;
+    }
+
+    /**
+     * Points the URL to its cache server path in HTML and stylesheets of this page
+     */
+    private void markLocal(String url) {
+        String localPath = CacheServer.toLocalPath(url);
+        if (localPath != null) {
+            urlToLocalPathMap.put(url, localPath);
+        }
+    }
+
+    private CacheEntry createEntry(String key, Path file, HttpHeaders headers, long wireSize) throws IOException {
+        CacheEntry entry = new CacheEntry(key, cacheIndex.toLocalPath(file));
+        CachePolicy.apply(entry, headers, entry.getFetchTime());
+        entry.setSize(Files.size(file));
+        entry.setWireSize(wireSize);
+        entry.setEtag(headers.firstValue("ETag").orElse(null));
+        entry.setLastModified(headers.firstValue("Last-Modified").orElse(null));
+        entry.setContentType(headers.firstValue("Content-Type").orElse(null));
+        return entry;
     }
 
-    private byte[] fetchBinaryResource(String url) throws IOException {
-        HttpURLConnection conn = null;
+    /**
+     * File name for a cached page: index.html for the site root, hashed name for other URLs
+     */
+    private String getPageFileName(String pageKey) {
         try {
-            conn = (HttpURLConnection) new URL(url).openConnection();
-            conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
-            conn.setRequestProperty("Accept", "*/*");
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
-            conn.setInstanceFollowRedirects(true);
-
-            int responseCode = conn.getResponseCode();
-
-            // Handle redirects
-            if (responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
-                    responseCode == HttpURLConnection.HTTP_MOVED_TEMP ||
-                    responseCode == HttpURLConnection.HTTP_SEE_OTHER) {
-                String newUrl = conn.getHeaderField("Location");
-                if (newUrl != null) {
-                    return fetchBinaryResource(newUrl);
+            URI uri = new URI(pageKey);
+            if ("/".equals(uri.getRawPath()) && uri.getRawQuery() == null) {
+                return "index.html";
+            }
+        } catch (URISyntaxException e) {
+            // Fall through to hashed name
+        }
+        return "page_" + CacheIndex.hashKey(pageKey) + ".html";
+    }
+
+    private String getLocalPathForUrl(String url) {
+        return urlToLocalPathMap.get(url);
+    }
+
+    /**
+     * Fetches HTML page, decompressing it while it is read.
+     * The page is kept as raw bytes and its charset detected from BOM, Content-Type or meta tag.
+     *
+     * @param cached Cached copy to revalidate, or null for unconditional request
+     * @return Page bytes (as ISO-8859-1 text) and response headers, or null if the cached copy is not modified
+     */
+    private StoredResource fetchResource(String url, CacheEntry cached) throws IOException {
+        HttpRequest.Builder builder = newRequest(url)
+                .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8")
+                .header("Accept-Language", "en-US,en;q=0.5");
+        addValidators(builder, cached);
+
+        // Redirects are followed by the pooled client
+        HttpResponse<InputStream> response = httpPool.send(builder.GET().build(), HttpResponse.BodyHandlers.ofInputStream(), cancellation);
+
+        try (InputStream in = response.body()) {
+            CancellationToken.Registration abort = abortOnCancel(in);
+            try {
+                if (isNotModified(response, cached)) {
+                    return null;
+                }
+
+                try (DecodedBody body = httpPool.decode(response)) {
+                    byte[] bytes = body.readAllBytes();
+                    HtmlCharset charset = HtmlCharset.detect(bytes, bytes.length,
+                            response.headers().firstValue("Content-Type").orElse(null));
+                    return new StoredResource(toPageText(bytes, charset), response.headers(), body.getWireBytes());
                 }
+            } finally {
+                abort.close();
             }
+        }
+    }
 
-            if (responseCode != 200) {
-                throw new IOException("HTTP response code: " + responseCode);
+    /**
+     * ISO-8859-1 view of the page bytes, so markup is found and rewritten without decoding
+     * and the bytes are saved unchanged. UTF-16 pages have no ASCII markup and are converted to UTF-8.
+     */
+    private String toPageText(byte[] bytes, HtmlCharset charset) {
+        pageCharset = charset.getCharset();
+        declarePageCharset = charset.needsMetaDeclaration();
+
+        if (!HtmlCharset.isAsciiCompatible(pageCharset)) {
+            int bom = charset.getBomLength();
+            String text = new String(bytes, bom, bytes.length - bom, pageCharset);
+            bytes = text.getBytes(StandardCharsets.UTF_8);
+            pageCharset = StandardCharsets.UTF_8;
+            declarePageCharset = true;
+        }
+
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Adds If-None-Match / If-Modified-Since from the cached entry
+     */
+    private void addValidators(HttpRequest.Builder builder, CacheEntry cached) {
+        // no-store responses are always fetched in full
+        if (cached == null || cached.isNoStore()) {
+            return;
+        }
+        if (cached.getEtag() != null) {
+            builder.header("If-None-Match", cached.getEtag());
+        }
+        if (cached.getLastModified() != null) {
+            builder.header("If-Modified-Since", cached.getLastModified());
+        }
+    }
+
+    /**
+     * Closing a streamed body wakes a blocked read and aborts the exchange,
+     * partially written blobs are then deleted by the blob store
+     */
+    private CancellationToken.Registration abortOnCancel(InputStream body) {
+        return cancellation.onCancel(() -> {
+            try {
+                body.close();
+            } catch (IOException e) {
+                // Aborting anyway
             }
+        });
+    }
 
-            try (InputStream in = conn.getInputStream();
-                 ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
-                return out.toByteArray();
+    /**
+     * Passes non-200 status through the handler chain.
+     * 304 is handled by NotModifiedHandler, other codes are errors.
+     * A 304 may carry new Cache-Control / Expires, they extend the cached entry's lifetime.
+     *
+     * @return true if cached copy should be used
+     */
+    private boolean isNotModified(HttpResponse<?> response, CacheEntry cached) throws IOException {
+        if (response.statusCode() == 200) {
+            return false;
+        }
+
+        HTTPResponse status = new HTTPResponse();
+        status.setStatusCode(response.statusCode());
+        handlerChain.process(status);
+
+        if (cached != null && "NotModifiedHandler".equals(status.getHeaders().get("X-Handled-By"))) {
+            HttpHeaders headers = response.headers();
+            if (headers.firstValue("Cache-Control").isPresent() || headers.firstValue("Expires").isPresent()) {
+                CachePolicy.apply(cached, headers, System.currentTimeMillis());
             }
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
+            return true;
+        }
+        throw new IOException("HTTP response code: " + response.statusCode());
+    }
+
+    /**
+     * Streams resource body into the blob store, hashing and decompressing it on the way.
+     * The body is never buffered on the heap, so memory use does not depend on asset size.
+     * Stylesheets are the exception: they are read into memory to be scanned and rewritten.
+     *
+     * @param cached Cached copy to revalidate, or null for unconditional request
+     * @return Stored blob (or stylesheet text) and response headers, only headers for a no-store response,
+     * or null if the cached copy is not modified
+     */
+    private StoredResource fetchBinaryResource(String url, CacheEntry cached) throws IOException {
+        HttpRequest.Builder builder = newRequest(url)
+                .header("Accept", "*/*");
+        addValidators(builder, cached);
+
+        HttpResponse<InputStream> response = httpPool.send(builder.GET().build(), HttpResponse.BodyHandlers.ofInputStream(), cancellation);
+
+        try (InputStream in = response.body()) {
+            CancellationToken.Registration abort = abortOnCancel(in);
+            try {
+                if (isNotModified(response, cached)) {
+                    return null;
+                }
+                if (CachePolicy.isNoStore(response.headers())) {
+                    // Not kept on disk, closing the body aborts the download
+                    return new StoredResource(response.headers());
+                }
+
+                try (DecodedBody body = httpPool.decode(response)) {
+                    if (isStylesheet(url, response.headers())) {
+                        String css = new String(body.readAllBytes(), StandardCharsets.ISO_8859_1);
+                        return new StoredResource(css, response.headers(), body.getWireBytes());
+                    }
+
+                    Path blob = cacheIndex.getBlobStore().store(body, getExtension(getFilenameFromUrl(url)));
+                    return new StoredResource(blob, response.headers(), body.getWireBytes());
+                }
+            } finally {
+                abort.close();
             }
         }
     }
 
+    private boolean isStylesheet(String url, HttpHeaders headers) {
+        return headers.firstValue("Content-Type")
+                .map(type -> type.toLowerCase(Locale.ROOT).startsWith("text/css"))
+                .orElseGet(() -> getExtension(getFilenameFromUrl(url)).equals(".css"));
+    }
+
+    private static String getExtension(String filename) {
+        int dotIndex = filename.lastIndexOf('.');
+        return dotIndex > 0 ? filename.substring(dotIndex).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private HttpRequest.Builder newRequest(String url) throws IOException {
+        try {
+            return httpPool.newRequest(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+    }
+
     private String resolveUrl(String baseUrl, String relativeUrl) {
         try {
             // Remove whitespace
@@ -360,7 +1216,7 @@ public class WebPageFetcher {
             }
 
             // Sanitize filename - remove invalid characters
-            filename = filename.replaceAll("[^a-zA-Z0-9._-]", "_");
+            filename = RegexPatterns.UNSAFE_FILE_NAME_CHARS.matcher(filename).replaceAll("_");
 
             // Limit filename length
             if (filename.length() > 200) {
@@ -380,4 +1236,80 @@ public class WebPageFetcher {
             return "resource_" + Math.abs(url.hashCode()) + ".bin";
         }
     }
+
+    /**
+     * Resource found in HTML that should be downloaded
+     */
+    private static class ResourceRef {
+        private final String url;
+        private final String type;
+        private final boolean stylesheet;
+        private final ResourcePriority priority;
+
+        ResourceRef(String url, String type, boolean stylesheet, ResourcePriority priority) {
+            this.url = url;
+            this.type = type;
+            this.stylesheet = stylesheet;
+            this.priority = priority;
+        }
+
+        ResourceRef withPriority(ResourcePriority other) {
+            ResourcePriority higher = priority.max(other);
+            return higher == priority ? this : new ResourceRef(url, type, stylesheet, higher);
+        }
+    }
+
+    /**
+     * Downloaded body, saved in the blob store or (HTML, stylesheets) kept as text to be rewritten
+     */
+    private static class StoredResource {
+        private final Path file;
+        private final String text;
+        private final HttpHeaders headers;
+        private final long wireSize;
+
+        StoredResource(Path file, HttpHeaders headers, long wireSize) {
+            this.file = file;
+            this.text = null;
+            this.headers = headers;
+            this.wireSize = wireSize;
+        }
+
+        StoredResource(String text, HttpHeaders headers, long wireSize) {
+            this.file = null;
+            this.text = text;
+            this.headers = headers;
+            this.wireSize = wireSize;
+        }
+
+        /**
+         * Response that must not be stored (no-store), neither file nor text
+         */
+        StoredResource(HttpHeaders headers) {
+            this.file = null;
+            this.text = null;
+            this.headers = headers;
+            this.wireSize = 0;
+        }
+    }
+
+    /**
+     * Downloaded stylesheet waiting for its url() / @import targets
+     */
+    private static class PendingStylesheet {
+        private final String url;
+        private final String key;
+        private final String css;
+        private final HttpHeaders headers;
+        private final long wireSize;
+        private final List<ResourceReference> references = new ArrayList<>();
+
+        PendingStylesheet(String url, String key, StoredResource stored) {
+            this.url = url;
+            this.key = key;
+            this.css = stored.text;
+            this.headers = stored.headers;
+            this.wireSize = stored.wireSize;
+        }
+    }
 }
\ No newline at end of file
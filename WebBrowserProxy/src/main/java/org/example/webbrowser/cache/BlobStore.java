@@ -0,0 +1,158 @@
+package org.example.webbrowser.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed store for downloaded resources
+ *
+ * Every resource is saved as blobs/<first 2 hex chars>/<sha-256><extension>.
+ * Identical bytes downloaded from different URLs or sites end up in one file,
+ * which is written only once.
+ */
+public class BlobStore {
+
+    public static final String BLOBS_DIR = "blobs";
+
+    private final Path root;
+
+    private final AtomicLong blobsWritten = new AtomicLong();
+    private final AtomicLong duplicatesSkipped = new AtomicLong();
+    private final AtomicLong bytesSkipped = new AtomicLong();
+
+    BlobStore(Path cacheRoot) {
+        this.root = cacheRoot.resolve(BLOBS_DIR);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Streams data into the store, hashing it on the way
+     *
+     * @param in Data to store (read to the end, not closed)
+     * @param extension File extension including dot (".css"), or empty string
+     * @return Path of the blob holding this content
+     * @throws IOException if data cannot be read or written
+     */
+    public Path store(InputStream in, String extension) throws IOException {
+        Files.createDirectories(root);
+        Path tempFile = root.resolve(".download-" + UUID.randomUUID() + ".tmp");
+
+        try {
+            MessageDigest digest = newDigest();
+            long size;
+            try (OutputStream out = Files.newOutputStream(tempFile, StandardOpenOption.CREATE_NEW)) {
+                size = new DigestInputStream(in, digest).transferTo(out);
+            }
+
+            String hash = toHex(digest.digest());
+            Path blob = root.resolve(hash.substring(0, 2)).resolve(hash + extension);
+
+            if (Files.exists(blob)) {
+                // Fresh timestamp keeps the janitor's orphan sweep away from a blob that is used again
+                Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+                duplicatesSkipped.incrementAndGet();
+                bytesSkipped.addAndGet(size);
+                return blob;
+            }
+
+            Files.createDirectories(blob.getParent());
+            moveIntoPlace(tempFile, blob);
+            blobsWritten.incrementAndGet();
+            return blob;
+
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void moveIntoPlace(Path tempFile, Path blob) throws IOException {
+        try {
+            Files.move(tempFile, blob, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(tempFile, blob);
+            } catch (FileAlreadyExistsException alreadyStored) {
+                // Same content was stored by another download in the meantime
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Same content was stored by another download in the meantime
+        }
+    }
+
+    /**
+     * Checks if a path (relative to cache root) points into the blob store
+     *
+     * @param localPath Path as stored in cache entries
+     * @return true for blob paths
+     */
+    public static boolean isBlobPath(String localPath) {
+        return localPath != null && localPath.startsWith(BLOBS_DIR + "/");
+    }
+
+    /**
+     * Prints deduplication statistics.
+     * Logical size counts every cached URL, stored size counts every blob once.
+     *
+     * @param index Index whose entries point into this store
+     */
+    public void printReport(CacheIndex index) {
+        long logicalBytes = 0;
+        long storedBytes = 0;
+        int references = 0;
+        Set<String> blobs = new HashSet<>();
+
+        for (CacheEntry entry : index.getEntries()) {
+            if (!isBlobPath(entry.getLocalPath())) {
+                continue;
+            }
+            references++;
+            logicalBytes += entry.getSize();
+            if (blobs.add(entry.getLocalPath())) {
+                storedBytes += entry.getSize();
+            }
+        }
+
+        double ratio = storedBytes == 0 ? 1.0 : logicalBytes / (double) storedBytes;
+
+        System.out.println("[BlobStore] " + references + " cached URLs stored in " + blobs.size() + " blobs" +
+                ", dedup ratio: " + String.format("%.2f", ratio) +
+                ", disk saved: " + (logicalBytes - storedBytes) + " bytes");
+        System.out.println("[BlobStore] This session: " + blobsWritten.get() + " blobs written, " +
+                duplicatesSkipped.get() + " duplicate downloads not written (" + bytesSkipped.get() + " bytes)");
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.webbrowser.cache;
+
+/**
+ * One cached URL (page or resource) in the browser cache index
+ */
+public class CacheEntry {
+    private String url;
+    private String localPath;
+    private long size;
+    private long wireSize;
+    private long fetchTime;
+    private long lastAccess;
+    private long hits;
+    private String etag;
+    private String lastModified;
+    private String contentType;
+    private long expiresAt;
+    private long staleWhileRevalidate;
+    private boolean noStore;
+    private boolean noCache;
+
+    public CacheEntry(String url, String localPath) {
+        this.url = url;
+        this.localPath = localPath;
+        this.fetchTime = System.currentTimeMillis();
+        this.lastAccess = fetchTime;
+        this.hits = 1;
+    }
+
+    /**
+     * @return Normalized URL (the index key)
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return Path of cached file relative to the cache root, with '/' separators
+     */
+    public String getLocalPath() {
+        return localPath;
+    }
+
+    public void setLocalPath(String localPath) {
+        this.localPath = localPath;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * @return Bytes received over the network for the last full download (compressed), 0 if unknown
+     */
+    public long getWireSize() {
+        return wireSize;
+    }
+
+    public void setWireSize(long wireSize) {
+        this.wireSize = wireSize;
+    }
+
+    public long getFetchTime() {
+        return fetchTime;
+    }
+
+    public void setFetchTime(long fetchTime) {
+        this.fetchTime = fetchTime;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    public void setLastAccess(long lastAccess) {
+        this.lastAccess = lastAccess;
+    }
+
+    /**
+     * @return How many times the entry was fetched or served from cache (used by LFU eviction)
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return Time until which the entry is fresh (epoch millis), 0 if it must always be revalidated
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return Seconds after expiry during which the entry may still be served while refreshing
+     */
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public boolean isNoStore() {
+        return noStore;
+    }
+
+    public void setNoStore(boolean noStore) {
+        this.noStore = noStore;
+    }
+
+    public boolean isNoCache() {
+        return noCache;
+    }
+
+    public void setNoCache(boolean noCache) {
+        this.noCache = noCache;
+    }
+
+    /**
+     * Marks entry as used now
+     */
+    public void touch() {
+        this.lastAccess = System.currentTimeMillis();
+        this.hits++;
+    }
+
+    @Override
+    public String toString() {
+        return url + " -> " + localPath + " (" + size + " bytes)";
+    }
+}
@@ -0,0 +1,370 @@
+package org.example.webbrowser.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the on-disk browser cache keyed by normalized URL
+ *
+ * Every cached page and resource has its own entry, so many pages of one site
+ * can be cached side by side and share downloaded resource files.
+ * The index is stored as a tab-separated file in the cache root.
+ */
+public class CacheIndex {
+
+    public static final Path DEFAULT_ROOT = Paths.get("browser_cache");
+
+    private static final String INDEX_FILE = "cache-index.tsv";
+    private static final String HEADER = "# url\tpath\tsize\tfetchTime\tlastAccess\tetag\tlastModified\tcontentType" +
+            "\texpiresAt\tstaleWhileRevalidate\tflags\thits\twireSize";
+
+    private static final Map<Path, CacheIndex> indexes = new HashMap<>();
+
+    private final Path root;
+    private final Map<String, CacheEntry> entries;
+    private final BlobStore blobStore;
+    private final CacheJanitor janitor;
+
+    private CacheIndex(Path root) {
+        this.root = root;
+        this.entries = new ConcurrentHashMap<>();
+        this.blobStore = new BlobStore(root);
+        this.janitor = new CacheJanitor(this);
+    }
+
+    /**
+     * Gets index of the default ./browser_cache directory
+     *
+     * @return Shared index
+     */
+    public static CacheIndex shared() {
+        return forDirectory(DEFAULT_ROOT);
+    }
+
+    /**
+     * Gets index for a cache root, loading it from disk on first use.
+     * All callers using the same directory share one instance.
+     *
+     * @param root Cache root directory
+     * @return Cache index
+     */
+    public static synchronized CacheIndex forDirectory(Path root) {
+        Path key = root.toAbsolutePath().normalize();
+        CacheIndex index = indexes.get(key);
+        if (index == null) {
+            index = new CacheIndex(key);
+            index.load();
+            indexes.put(key, index);
+            index.janitor.scheduleStartupScan();
+        }
+        return index;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return Content-addressed store for resources of this cache
+     */
+    public BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    /**
+     * @return Janitor that keeps this cache within its byte budget
+     */
+    public CacheJanitor getJanitor() {
+        return janitor;
+    }
+
+    /**
+     * Gets entry for URL if its file still exists
+     *
+     * @param url Any form of the URL (it is normalized)
+     * @return Entry or null
+     */
+    public CacheEntry get(String url) {
+        CacheEntry entry = entries.get(normalizeUrl(url));
+        if (entry == null) {
+            return null;
+        }
+        if (!Files.exists(resolve(entry))) {
+            entries.remove(entry.getUrl());
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Adds or replaces entry.
+     * A refreshed URL keeps the hit count of the entry it replaces.
+     *
+     * @param entry Entry with normalized URL
+     */
+    public void put(CacheEntry entry) {
+        CacheEntry previous = entries.put(entry.getUrl(), entry);
+        if (previous != null && previous != entry) {
+            entry.setHits(Math.max(entry.getHits(), previous.getHits()));
+        }
+        janitor.onStored(entry.getSize());
+    }
+
+    public CacheEntry remove(String url) {
+        return entries.remove(normalizeUrl(url));
+    }
+
+    /**
+     * Removes entry only if its URL was not refreshed to a new entry in the meantime
+     */
+    boolean remove(CacheEntry entry) {
+        return entries.remove(entry.getUrl(), entry);
+    }
+
+    /**
+     * Removes the entry and deletes its file, for content that must not stay on disk (no-store)
+     *
+     * @param entry Entry to drop
+     */
+    public void discard(CacheEntry entry) {
+        remove(entry);
+        Path file = resolve(entry);
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(PageManifest.forPage(file));
+        } catch (IOException e) {
+            System.err.println("[CacheIndex] Failed to delete " + file + ": " + e.getMessage());
+        }
+        save();
+    }
+
+    public Collection<CacheEntry> getEntries() {
+        return entries.values();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Resolves entry's local path against cache root
+     *
+     * @param entry Cache entry
+     * @return Absolute path of cached file
+     */
+    public Path resolve(CacheEntry entry) {
+        return root.resolve(entry.getLocalPath());
+    }
+
+    /**
+     * Converts absolute file path to the form stored in entries
+     *
+     * @param file File inside cache root
+     * @return Relative path with '/' separators
+     */
+    public String toLocalPath(Path file) {
+        return root.relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    /**
+     * Finds entry whose cached file is the given file
+     *
+     * @param file Cached file
+     * @return Entry or null
+     */
+    public CacheEntry findByFile(Path file) {
+        String localPath = toLocalPath(file);
+        for (CacheEntry entry : entries.values()) {
+            if (entry.getLocalPath().equals(localPath)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes index to disk (temp file + rename, so a crash never leaves half an index)
+     */
+    public synchronized void save() {
+        try {
+            Files.createDirectories(root);
+            Path indexFile = root.resolve(INDEX_FILE);
+            Path tempFile = root.resolve(INDEX_FILE + ".tmp");
+
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (CacheEntry entry : entries.values()) {
+                    writer.write(toLine(entry));
+                    writer.newLine();
+                }
+            }
+
+            try {
+                Files.move(tempFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("[CacheIndex] Failed to save index: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        Path indexFile = root.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                CacheEntry entry = fromLine(line);
+                if (entry != null) {
+                    entries.put(entry.getUrl(), entry);
+                }
+            }
+            System.out.println("[CacheIndex] Loaded " + entries.size() + " entries from " + indexFile);
+        } catch (IOException e) {
+            System.err.println("[CacheIndex] Failed to load index: " + e.getMessage());
+        }
+    }
+
+    private String toLine(CacheEntry entry) {
+        return String.join("\t",
+                clean(entry.getUrl()),
+                clean(entry.getLocalPath()),
+                String.valueOf(entry.getSize()),
+                String.valueOf(entry.getFetchTime()),
+                String.valueOf(entry.getLastAccess()),
+                clean(entry.getEtag()),
+                clean(entry.getLastModified()),
+                clean(entry.getContentType()),
+                String.valueOf(entry.getExpiresAt()),
+                String.valueOf(entry.getStaleWhileRevalidate()),
+                (entry.isNoStore() ? "S" : "") + (entry.isNoCache() ? "C" : ""),
+                String.valueOf(entry.getHits()),
+                String.valueOf(entry.getWireSize()));
+    }
+
+    private CacheEntry fromLine(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length < 8) {
+            return null;
+        }
+
+        try {
+            CacheEntry entry = new CacheEntry(fields[0], fields[1]);
+            entry.setSize(Long.parseLong(fields[2]));
+            entry.setFetchTime(Long.parseLong(fields[3]));
+            entry.setLastAccess(Long.parseLong(fields[4]));
+            entry.setEtag(emptyToNull(fields[5]));
+            entry.setLastModified(emptyToNull(fields[6]));
+            entry.setContentType(emptyToNull(fields[7]));
+
+            // Freshness columns (missing in indexes written by older versions)
+            if (fields.length >= 11) {
+                entry.setExpiresAt(Long.parseLong(fields[8]));
+                entry.setStaleWhileRevalidate(Long.parseLong(fields[9]));
+                entry.setNoStore(fields[10].contains("S"));
+                entry.setNoCache(fields[10].contains("C"));
+            }
+            if (fields.length >= 12) {
+                entry.setHits(Long.parseLong(fields[11]));
+            }
+            if (fields.length >= 13) {
+                entry.setWireSize(Long.parseLong(fields[12]));
+            }
+            return entry;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Normalizes URL for use as cache key: lowercase scheme and host,
+     * no default port, no fragment, empty path becomes "/"
+     *
+     * @param url URL to normalize
+     * @return Normalized URL, or the input if it cannot be parsed
+     */
+    public static String normalizeUrl(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return url.trim();
+            }
+
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            String host = uri.getHost().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if ((scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443)) {
+                port = -1;
+            }
+
+            String path = uri.getRawPath();
+            if (path == null || path.isEmpty()) {
+                path = "/";
+            }
+
+            StringBuilder normalized = new StringBuilder(scheme).append("://").append(host);
+            if (port != -1) {
+                normalized.append(':').append(port);
+            }
+            normalized.append(path);
+            if (uri.getRawQuery() != null) {
+                normalized.append('?').append(uri.getRawQuery());
+            }
+            return normalized.toString();
+
+        } catch (URISyntaxException e) {
+            return url.trim();
+        }
+    }
+
+    /**
+     * Short stable hash of a key, used for cache file names
+     *
+     * @param key Normalized URL
+     * @return 16 hex characters of SHA-256
+     */
+    public static String hashKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package org.example.webbrowser.cache;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the on-disk browser cache within a byte budget
+ *
+ * Usage is taken from the sizes recorded in the cache index, so no files are
+ * walked to find out how big the cache is. When a new file pushes the cache over
+ * the budget, least recently (LRU) or least frequently (LFU) used files are deleted
+ * until it is back under 90% of the budget. All work runs on one low-priority
+ * background thread, so fetching a page never waits for eviction.
+ *
+ * A blob used by a cached page is treated as used whenever the page is, so pages
+ * are always evicted before the resources they show.
+ *
+ * Settings can be changed with system properties (read once at startup):
+ * -Dwebbrowser.cache.maxBytes=N       byte budget of the whole cache (default 512 MB)
+ * -Dwebbrowser.cache.eviction=LRU|LFU eviction order (default LRU)
+ */
+public class CacheJanitor {
+
+    /**
+     * Which cached files are deleted first
+     */
+    public enum EvictionPolicy {
+        /** Oldest last access first */
+        LRU,
+        /** Fewest hits first, oldest last access among equal hits */
+        LFU;
+
+        static EvictionPolicy fromName(String name) {
+            try {
+                return name == null ? LRU : valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[CacheJanitor] Unknown eviction policy '" + name + "', using LRU");
+                return LRU;
+            }
+        }
+    }
+
+    private static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+    /**
+     * Eviction stops once usage is below this part of the budget, so one new file does not trigger another run
+     */
+    private static final double LOW_WATERMARK = 0.9;
+
+    /**
+     * Files used this recently are never deleted, they may belong to a page that is loading right now
+     */
+    private static final long GRACE_PERIOD_MILLIS = 60_000;
+
+    /**
+     * Single low-priority thread shared by the janitors of all cache roots
+     */
+    private static ExecutorService executor;
+
+    private final CacheIndex index;
+    private final long maxBytes;
+    private final EvictionPolicy policy;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicBoolean trimScheduled = new AtomicBoolean();
+    private volatile boolean scanned;
+
+    CacheJanitor(CacheIndex index) {
+        this(index,
+                Long.getLong("webbrowser.cache.maxBytes", DEFAULT_MAX_BYTES),
+                EvictionPolicy.fromName(System.getProperty("webbrowser.cache.eviction")));
+    }
+
+    CacheJanitor(CacheIndex index, long maxBytes, EvictionPolicy policy) {
+        this.index = index;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-janitor");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Loads the index of a cache root on the janitor thread and runs its startup scan there.
+     * Call it at application start so neither step runs on the UI thread.
+     *
+     * @param cacheRoot Cache root directory
+     */
+    public static void startInBackground(Path cacheRoot) {
+        getExecutor().execute(() -> CacheIndex.forDirectory(cacheRoot));
+    }
+
+    /**
+     * Runs a cache task on the janitor thread, after the tasks queued before it
+     */
+    static void runInBackground(Runnable task) {
+        getExecutor().execute(task);
+    }
+
+    /**
+     * Deletes a page saved with Cache-Control: no-store, on the janitor thread.
+     * Such a page is kept only until the browser has shown it.
+     *
+     * @param cacheRoot Cache root directory
+     * @param pageFile Saved page; nothing happens if it may be cached
+     */
+    public static void discardIfNoStore(Path cacheRoot, Path pageFile) {
+        getExecutor().execute(() -> {
+            CacheIndex index = CacheIndex.forDirectory(cacheRoot);
+            CacheEntry entry = index.findByFile(pageFile);
+            if (entry != null && entry.isNoStore()) {
+                index.discard(entry);
+                System.out.println("[CacheJanitor] Discarded no-store page " + entry.getUrl());
+            }
+        });
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return Bytes used by the cache as of the last scan, plus files stored since then
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    void scheduleStartupScan() {
+        getExecutor().execute(this::startupScan);
+    }
+
+    /**
+     * Called for every file added to the index, only schedules eviction
+     *
+     * @param size Size of the stored file
+     */
+    void onStored(long size) {
+        if (usedBytes.addAndGet(size) > maxBytes && scanned) {
+            scheduleTrim();
+        }
+    }
+
+    /**
+     * Runs eviction on the janitor thread, at most one pending run at a time
+     */
+    public void scheduleTrim() {
+        if (!trimScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        getExecutor().execute(() -> {
+            trimScheduled.set(false);
+            try {
+                trim();
+            } catch (RuntimeException e) {
+                System.err.println("[CacheJanitor] Eviction failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Rebuilds accounting from the index, removes leftovers of interrupted
+     * downloads and blobs nothing points to, then evicts if over budget
+     */
+    private void startupScan() {
+        long startTime = System.currentTimeMillis();
+
+        Map<String, CachedFile> files = collectFiles();
+        long total = totalSize(files);
+        usedBytes.set(total);
+
+        long orphanBytes = sweepBlobs(files);
+        scanned = true;
+
+        System.out.println("[CacheJanitor] " + files.size() + " cached files, " + total + " of " + maxBytes +
+                " bytes used (" + policy + "), " + orphanBytes + " orphan bytes removed in " +
+                (System.currentTimeMillis() - startTime) + " ms");
+
+        if (total > maxBytes) {
+            trim();
+        }
+    }
+
+    private void trim() {
+        Map<String, CachedFile> files = collectFiles();
+        long total = totalSize(files);
+        usedBytes.set(total);
+        if (total <= maxBytes) {
+            return;
+        }
+
+        long target = (long) (maxBytes * LOW_WATERMARK);
+        long now = System.currentTimeMillis();
+        List<CachedFile> candidates = new ArrayList<>(files.values());
+        candidates.sort(getEvictionOrder());
+
+        int evictedEntries = 0;
+        long evictedBytes = 0;
+        for (CachedFile file : candidates) {
+            if (total <= target) {
+                break;
+            }
+            if (now - file.lastAccess < GRACE_PERIOD_MILLIS) {
+                continue;
+            }
+
+            evictedEntries += evict(file);
+            evictedBytes += file.size;
+            total -= file.size;
+        }
+
+        usedBytes.addAndGet(-evictedBytes);
+        index.save();
+
+        System.out.println("[CacheJanitor] Evicted " + evictedEntries + " entries (" + evictedBytes +
+                " bytes), cache now " + total + " of " + maxBytes + " bytes");
+    }
+
+    /**
+     * Pages go before blobs on equal keys, so a page is never left pointing to a deleted blob
+     */
+    private Comparator<CachedFile> getEvictionOrder() {
+        Comparator<CachedFile> order = policy == EvictionPolicy.LFU
+                ? Comparator.<CachedFile>comparingLong(file -> file.hits).thenComparingLong(file -> file.lastAccess)
+                : Comparator.comparingLong(file -> file.lastAccess);
+        return order.thenComparing(file -> !file.page);
+    }
+
+    /**
+     * Groups index entries by the file they point to.
+     * Blobs listed in page manifests inherit the page's last access and hits.
+     */
+    private Map<String, CachedFile> collectFiles() {
+        Map<String, CachedFile> files = new HashMap<>();
+
+        for (CacheEntry entry : index.getEntries()) {
+            CachedFile file = files.computeIfAbsent(entry.getLocalPath(), CachedFile::new);
+            file.entries.add(entry);
+            file.size = entry.getSize();
+            file.lastAccess = Math.max(file.lastAccess, entry.getLastAccess());
+            file.hits += entry.getHits();
+            file.page = !BlobStore.isBlobPath(entry.getLocalPath());
+        }
+
+        for (CachedFile page : new ArrayList<>(files.values())) {
+            if (!page.page) {
+                continue;
+            }
+
+            Map<String, String> resources;
+            try {
+                resources = PageManifest.read(index.getRoot().resolve(page.localPath));
+            } catch (IOException e) {
+                continue;
+            }
+
+            for (String blobPath : resources.values()) {
+                CachedFile blob = files.get(blobPath);
+                if (blob == null) {
+                    // Old content of a refreshed URL, only the page still uses it
+                    blob = new CachedFile(blobPath);
+                    try {
+                        blob.size = Files.size(index.getRoot().resolve(blobPath));
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    files.put(blobPath, blob);
+                }
+                blob.lastAccess = Math.max(blob.lastAccess, page.lastAccess);
+                blob.hits = Math.max(blob.hits, page.hits);
+            }
+        }
+
+        return files;
+    }
+
+    private static long totalSize(Map<String, CachedFile> files) {
+        long total = 0;
+        for (CachedFile file : files.values()) {
+            total += file.size;
+        }
+        return total;
+    }
+
+    /**
+     * Removes the file's index entries and deletes it from disk
+     *
+     * @return Number of index entries removed
+     */
+    private int evict(CachedFile file) {
+        int removed = 0;
+        for (CacheEntry entry : file.entries) {
+            if (index.remove(entry)) {
+                removed++;
+            }
+        }
+
+        Path path = index.getRoot().resolve(file.localPath);
+        try {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(PageManifest.forPage(path));
+        } catch (IOException e) {
+            System.err.println("[CacheJanitor] Failed to delete " + path + ": " + e.getMessage());
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes temp files of interrupted downloads and blobs no entry or manifest points to.
+     * Runs once at startup on the janitor thread.
+     *
+     * @return Bytes freed
+     */
+    private long sweepBlobs(Map<String, CachedFile> files) {
+        Path blobRoot = index.getBlobStore().getRoot();
+        if (!Files.isDirectory(blobRoot)) {
+            return 0;
+        }
+
+        long cutoff = System.currentTimeMillis() - GRACE_PERIOD_MILLIS;
+        AtomicLong freed = new AtomicLong();
+
+        try (DirectoryStream<Path> tempFiles = Files.newDirectoryStream(blobRoot, ".download-*.tmp")) {
+            for (Path tempFile : tempFiles) {
+                deleteIfOlder(tempFile, cutoff, freed);
+            }
+        } catch (IOException e) {
+            System.err.println("[CacheJanitor] Failed to list " + blobRoot + ": " + e.getMessage());
+        }
+
+        try (Stream<Path> blobs = Files.walk(blobRoot, 2)) {
+            blobs.filter(path -> !path.getParent().equals(blobRoot))
+                    .filter(Files::isRegularFile)
+                    .filter(path -> !files.containsKey(getOwnerPath(index.toLocalPath(path))))
+                    .forEach(path -> deleteIfOlder(path, cutoff, freed));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[CacheJanitor] Failed to sweep " + blobRoot + ": " + e.getMessage());
+        }
+
+        return freed.get();
+    }
+
+    /**
+     * A stylesheet blob's manifest belongs to the stylesheet
+     */
+    private static String getOwnerPath(String localPath) {
+        return localPath.endsWith(PageManifest.EXTENSION)
+                ? localPath.substring(0, localPath.length() - PageManifest.EXTENSION.length())
+                : localPath;
+    }
+
+    private static void deleteIfOlder(Path path, long cutoff, AtomicLong freed) {
+        try {
+            if (Files.getLastModifiedTime(path).toMillis() < cutoff) {
+                long size = Files.size(path);
+                Files.delete(path);
+                freed.addAndGet(size);
+            }
+        } catch (IOException e) {
+            // Already gone or in use, next startup will try again
+        }
+    }
+
+    /**
+     * One file on disk with every index entry that points to it
+     */
+    private static class CachedFile {
+        private final String localPath;
+        private final List<CacheEntry> entries = new ArrayList<>();
+        private long size;
+        private long lastAccess;
+        private long hits;
+        private boolean page;
+
+        CachedFile(String localPath) {
+            this.localPath = localPath;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.webbrowser.cache;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Freshness rules from Cache-Control and Expires response headers
+ *
+ * Supported directives: max-age, no-store, no-cache, immutable, stale-while-revalidate.
+ * Expires is used only when max-age is missing. A response without any of them
+ * is stale right away and is revalidated with ETag / Last-Modified on next use.
+ */
+public class CachePolicy {
+
+    /**
+     * How a cached entry may be used right now
+     */
+    public enum Freshness {
+        /** Serve from cache, no network at all */
+        FRESH,
+        /** Serve from cache now, refresh in background */
+        STALE_WHILE_REVALIDATE,
+        /** Must be revalidated (or refetched) before use */
+        STALE
+    }
+
+    private static final long IMMUTABLE_LIFETIME_SECONDS = 365L * 24 * 60 * 60;
+
+    private CachePolicy() {
+    }
+
+    /**
+     * Stores freshness information from response headers in the entry.
+     * Called for full responses and for 304 answers (which may extend lifetime).
+     *
+     * @param entry Entry to update
+     * @param headers Response headers
+     * @param now Time the response was received (epoch millis)
+     */
+    public static void apply(CacheEntry entry, HttpHeaders headers, long now) {
+        long maxAge = -1;
+        long staleWhileRevalidate = 0;
+        boolean noStore = false;
+        boolean noCache = false;
+        boolean immutable = false;
+
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String directive : value.split(",")) {
+                String[] parts = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+                String name = parts[0].trim();
+                String argument = parts.length > 1 ? parts[1].trim().replace("\"", "") : null;
+
+                switch (name) {
+                    case "max-age":
+                        maxAge = parseSeconds(argument, maxAge);
+                        break;
+                    case "stale-while-revalidate":
+                        staleWhileRevalidate = parseSeconds(argument, 0);
+                        break;
+                    case "no-store":
+                        noStore = true;
+                        break;
+                    case "no-cache":
+                        noCache = true;
+                        break;
+                    case "immutable":
+                        immutable = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        long age = parseSeconds(headers.firstValue("Age").orElse(null), 0);
+
+        long expiresAt = 0;
+        if (maxAge >= 0) {
+            expiresAt = now + (maxAge - age) * 1000;
+        } else if (immutable) {
+            expiresAt = now + IMMUTABLE_LIFETIME_SECONDS * 1000;
+        } else if (headers.firstValue("Expires").isPresent()) {
+            expiresAt = parseHttpDate(headers.firstValue("Expires").get());
+        }
+
+        entry.setExpiresAt(expiresAt);
+        entry.setStaleWhileRevalidate(staleWhileRevalidate);
+        entry.setNoStore(noStore);
+        entry.setNoCache(noCache);
+    }
+
+    /**
+     * @param headers Response headers
+     * @return true if Cache-Control forbids keeping the response
+     */
+    public static boolean isNoStore(HttpHeaders headers) {
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String directive : value.split(",")) {
+                if (directive.trim().equalsIgnoreCase("no-store")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decides how the entry can be used at the given time
+     *
+     * @param entry Cache entry
+     * @param now Current time (epoch millis)
+     * @return Freshness state
+     */
+    public static Freshness getFreshness(CacheEntry entry, long now) {
+        if (entry.isNoStore() || entry.isNoCache()) {
+            return Freshness.STALE;
+        }
+        if (now < entry.getExpiresAt()) {
+            return Freshness.FRESH;
+        }
+        if (entry.getExpiresAt() > 0 && now < entry.getExpiresAt() + entry.getStaleWhileRevalidate() * 1000) {
+            return Freshness.STALE_WHILE_REVALIDATE;
+        }
+        return Freshness.STALE;
+    }
+
+    private static long parseSeconds(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Parses HTTP date (RFC 1123), invalid dates mean "already expired"
+     */
+    private static long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
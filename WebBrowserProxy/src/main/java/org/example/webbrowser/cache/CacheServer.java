@@ -0,0 +1,482 @@
+package org.example.webbrowser.cache;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback HTTP server that hands the cache to the WebView
+ *
+ * http://127.0.0.1:PORT/HOST[:PORT]/PATH?QUERY serves the cached copy of
+ * SCHEME://HOST[:PORT]/PATH?QUERY. Pages and resources point to each other by
+ * these root-relative paths, so relative URLs resolve the same way as on the
+ * original site, and the WebView gets Content-Type, ETag / 304 and byte ranges
+ * like from any other server. URLs that are not cached are redirected to the network.
+ *
+ * The port can be fixed with -Dwebbrowser.cacheServer.port=N (default: any free port).
+ */
+public class CacheServer {
+
+    private static final int DEFAULT_PORT = 0;
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    /**
+     * Scheme of every host a local path was made for. The path only carries the
+     * authority, hosts seen in an earlier run are looked up in the index instead.
+     */
+    private static final Map<String, String> knownSchemes = new ConcurrentHashMap<>();
+
+    private static volatile CacheServer shared;
+
+    private final CacheIndex index;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String origin;
+
+    /**
+     * Creates a server bound to 127.0.0.1, call start() to accept requests
+     *
+     * @param index Cache to serve
+     * @param port Port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public CacheServer(CacheIndex index, int port) throws IOException {
+        this.index = index;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.origin = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "cache-server-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Gets the server of the default cache, starting it on first use
+     *
+     * @return Running server
+     * @throws UncheckedIOException if the server cannot be started
+     */
+    public static synchronized CacheServer shared() {
+        if (shared == null) {
+            try {
+                CacheServer server = new CacheServer(CacheIndex.shared(),
+                        Integer.getInteger("webbrowser.cacheServer.port", DEFAULT_PORT));
+                server.start();
+                shared = server;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cache server could not be started", e);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Starts the shared server on the janitor thread, after the index load queued by
+     * CacheJanitor.startInBackground(). Binding the port and loading the index never run
+     * on the UI thread then; the UI uses getStarted().
+     */
+    public static void startInBackground() {
+        CacheJanitor.runInBackground(() -> {
+            try {
+                shared();
+            } catch (UncheckedIOException e) {
+                System.err.println("[CacheServer] " + e.getMessage() + ": " + e.getCause().getMessage());
+            }
+        });
+    }
+
+    /**
+     * Gets the shared server without starting it, never blocks
+     *
+     * @return Running server, or null if it is not started (yet)
+     */
+    public static CacheServer getStarted() {
+        return shared;
+    }
+
+    /**
+     * Stops the shared server if it was started, its dispatcher thread would keep the JVM alive
+     */
+    public static synchronized void stopShared() {
+        if (shared != null) {
+            shared.stop();
+            shared = null;
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("[CacheServer] Serving " + index.getRoot() + " at " + origin);
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return Scheme, address and port of the server, e.g. http://127.0.0.1:51234
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Path on the cache server for a network URL, the same on every server instance
+     *
+     * @param url Absolute http(s) URL
+     * @return "/host[:port]/path?query" with non-ASCII characters percent-encoded, or null if the URL cannot be mapped
+     */
+    public static String toLocalPath(String url) {
+        try {
+            URI uri = URI.create(new URI(CacheIndex.normalizeUrl(url)).toASCIIString());
+            String scheme = uri.getScheme();
+            if (uri.getRawAuthority() == null || !("http".equals(scheme) || "https".equals(scheme))) {
+                return null;
+            }
+            knownSchemes.put(uri.getRawAuthority(), scheme);
+
+            String local = "/" + uri.getRawAuthority() + uri.getRawPath();
+            return uri.getRawQuery() != null ? local + "?" + uri.getRawQuery() : local;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Full URL on this server for a network URL, the fragment is kept
+     *
+     * @param url Absolute http(s) URL
+     * @return Local URL, or the URL itself if it cannot be mapped
+     */
+    public String toLocalUrl(String url) {
+        String path = toLocalPath(url);
+        if (path == null) {
+            return url;
+        }
+        int hash = url.indexOf('#');
+        return origin + path + (hash >= 0 ? url.substring(hash) : "");
+    }
+
+    /**
+     * @param url Any URL
+     * @return true if the URL points to this server
+     */
+    public boolean isLocalUrl(String url) {
+        return url != null && (url.equals(origin) || url.startsWith(origin + "/"));
+    }
+
+    /**
+     * Network URL of a page or resource on this server, inverse of toLocalUrl()
+     *
+     * @param url URL shown by the WebView
+     * @return Original URL, or the URL itself if it does not point to this server
+     */
+    public String toOriginalUrl(String url) {
+        if (!isLocalUrl(url)) {
+            return url;
+        }
+        String original = toOriginal(url.substring(origin.length()));
+        return original != null ? original : url;
+    }
+
+    /**
+     * @param pathAndQuery "/host[:port]/path?query#fragment"
+     * @return Network URL, or null if the path has no authority
+     */
+    private String toOriginal(String pathAndQuery) {
+        if (pathAndQuery.length() < 2) {
+            return null;
+        }
+        String rest = pathAndQuery.substring(1);
+        int slash = indexOfAny(rest, "/?#");
+        String authority = slash >= 0 ? rest.substring(0, slash) : rest;
+        if (authority.isEmpty()) {
+            return null;
+        }
+        if (slash < 0 || rest.charAt(slash) != '/') {
+            rest = authority + "/" + rest.substring(authority.length());
+        }
+        return getScheme(authority) + "://" + rest;
+    }
+
+    private String getScheme(String authority) {
+        return isKnownAuthority(authority) ? knownSchemes.get(authority) : "https";
+    }
+
+    /**
+     * True if the authority belongs to a cached site; hosts cached in an earlier run are
+     * found in the index by their root page and remembered
+     */
+    private boolean isKnownAuthority(String authority) {
+        if (knownSchemes.containsKey(authority)) {
+            return true;
+        }
+        for (String scheme : new String[]{"https", "http"}) {
+            String prefix = scheme + "://" + authority + "/";
+            for (CacheEntry entry : index.getEntries()) {
+                if (entry.getUrl().startsWith(prefix)) {
+                    knownSchemes.putIfAbsent(authority, scheme);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int indexOfAny(String text, String chars) {
+        for (int i = 0; i < text.length(); i++) {
+            if (chars.indexOf(text.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            URI requestUri = exchange.getRequestURI();
+            String pathAndQuery = requestUri.getRawPath() +
+                    (requestUri.getRawQuery() != null ? "?" + requestUri.getRawQuery() : "");
+            String authority = getAuthority(pathAndQuery);
+
+            // A root-relative URL the page built itself (e.g. "/about" from a script) has no host in front
+            String referer = exchange.getRequestHeaders().getFirst("Referer");
+            if ((authority == null || !isKnownAuthority(authority)) && isLocalUrl(referer)) {
+                String page = toOriginalUrl(referer);
+                if (!page.equals(referer)) {
+                    String original = URI.create(page).resolve(pathAndQuery).toString();
+                    String local = toLocalPath(original);
+                    redirect(exchange, index.get(original) != null && local != null ? local : original);
+                    return;
+                }
+            }
+
+            String original = toOriginal(pathAndQuery);
+            if (original == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            CacheEntry entry = index.get(original);
+            if (entry == null) {
+                // Not downloaded (yet), the WebView gets it from the network itself
+                redirect(exchange, original);
+                return;
+            }
+            send(exchange, entry, index.resolve(entry), null, getCacheControl(entry));
+        } catch (RuntimeException e) {
+            System.err.println("[CacheServer] " + exchange.getRequestURI() + " failed: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String getAuthority(String pathAndQuery) {
+        int end = indexOfAny(pathAndQuery.substring(1), "/?");
+        String authority = end >= 0 ? pathAndQuery.substring(1, end + 1) : pathAndQuery.substring(1);
+        return authority.isEmpty() ? null : authority;
+    }
+
+    private static void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().set("Location", location);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(302, -1);
+    }
+
+    /**
+     * Sends a cached file with validators, answering conditional and range requests
+     *
+     * @param exchange Request to answer
+     * @param entry Entry of the file, for its Content-Type
+     * @param file Cached file
+     * @param etag Entity tag to send, or null to make one from size and modification time
+     * @param cacheControl Cache-Control header to send
+     * @throws IOException if the file cannot be read or the client went away
+     */
+    public static void send(HttpExchange exchange, CacheEntry entry, Path file, String etag, String cacheControl)
+            throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        if (etag == null) {
+            etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(modified) + "\"";
+        }
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", getContentType(entry, file));
+        headers.set("ETag", etag);
+        headers.set("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(modified)));
+        headers.set("Cache-Control", cacheControl);
+        headers.set("Accept-Ranges", "bytes");
+        entry.touch();
+
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        long start = 0;
+        long length = size;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds != null && bounds.length == 0) {
+                headers.set("Content-Range", "bytes */" + size);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                status = 206;
+                headers.set("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+            }
+        }
+
+        headers.set("Content-Length", Long.toString(length));
+        if ("HEAD".equals(exchange.getRequestMethod()) || length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             OutputStream body = exchange.getResponseBody()) {
+            WritableByteChannel target = Channels.newChannel(body);
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    throw new IOException("File shrank while it was sent: " + file);
+                }
+                position += sent;
+            }
+        }
+    }
+
+    /**
+     * Parses a single "bytes=" range, clamped to the file
+     *
+     * @return {first, last}, an empty array if the range cannot be satisfied,
+     * or null to ignore the header (malformed or several ranges)
+     */
+    static long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+
+            long from = Long.parseLong(first);
+            long to = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (from >= size) {
+                return new long[0];
+            }
+            return from <= to ? new long[]{from, to} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getContentType(CacheEntry entry, Path file) throws IOException {
+        if (entry.getContentType() != null) {
+            return entry.getContentType();
+        }
+        String guessed = Files.probeContentType(file);
+        return guessed != null ? guessed : "application/octet-stream";
+    }
+
+    /**
+     * Pages are always revalidated (they are replaced when background downloads finish),
+     * resources may be kept by the WebView for as long as they are fresh in this cache
+     */
+    private static String getCacheControl(CacheEntry entry) {
+        return BlobStore.isBlobPath(entry.getLocalPath()) ? getFreshnessControl(entry) : "no-cache";
+    }
+
+    /**
+     * @param entry Cache entry
+     * @return "max-age=N" for the time the entry stays fresh, "no-cache" if it is not fresh
+     */
+    public static String getFreshnessControl(CacheEntry entry) {
+        long remaining = (entry.getExpiresAt() - System.currentTimeMillis()) / 1000;
+        if (CachePolicy.getFreshness(entry, System.currentTimeMillis()) != CachePolicy.Freshness.FRESH || remaining <= 0) {
+            return "no-cache";
+        }
+        return "max-age=" + remaining;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheServer[" + origin + ", " + index.getRoot() + "]";
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.webbrowser.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * List of resources a cached page or stylesheet points to
+ *
+ * Saved next to the page file as <page>.manifest, one "url TAB local path" line per resource.
+ * Blobs listed in any manifest are still in use by a page, even if the URL's
+ * index entry already points to newer content. A page's manifest also lists
+ * the blobs its stylesheets point to.
+ */
+public class PageManifest {
+
+    public static final String EXTENSION = ".manifest";
+
+    private PageManifest() {
+    }
+
+    /**
+     * Manifest file for a cached page
+     *
+     * @param pageFile Cached HTML file
+     * @return Manifest path
+     */
+    public static Path forPage(Path pageFile) {
+        return pageFile.resolveSibling(pageFile.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Writes manifest for a page
+     *
+     * @param pageFile Cached HTML file
+     * @param resources Resource URL to local path (relative to cache root)
+     */
+    public static void write(Path pageFile, Map<String, String> resources) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(forPage(pageFile), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> resource : resources.entrySet()) {
+                writer.write(resource.getKey() + "\t" + resource.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads manifest of a page
+     *
+     * @param pageFile Cached HTML file
+     * @return Resource URL to local path, empty if page has no manifest
+     */
+    public static Map<String, String> read(Path pageFile) throws IOException {
+        Map<String, String> resources = new LinkedHashMap<>();
+        Path manifest = forPage(pageFile);
+        if (!Files.exists(manifest)) {
+            return resources;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    resources.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+            }
+        }
+        return resources;
+    }
+}
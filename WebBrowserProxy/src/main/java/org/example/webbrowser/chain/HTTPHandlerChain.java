@@ -14,7 +14,7 @@ public class HTTPHandlerChain {
     
     /**
      * Constructs the default handler chain
-     * Order: 404 -> 502 -> 503 -> 200 -> Default
+     * Order: 404 -> 502 -> 503 -> 304 -> 200 -> Default
      */
     public HTTPHandlerChain() {
         buildDefaultChain();
@@ -29,12 +29,14 @@ public class HTTPHandlerChain {
         HTTPResponseHandler notFoundHandler = new NotFoundHandler();
         HTTPResponseHandler badGatewayHandler = new BadGatewayHandler();
         HTTPResponseHandler serviceUnavailableHandler = new ServiceUnavailableHandler();
+        HTTPResponseHandler notModifiedHandler = new NotModifiedHandler();
         HTTPResponseHandler successHandler = new SuccessHandler();
 
         // Link handlers in chain
         successHandler.setNext(notFoundHandler);
         notFoundHandler.setNext(badGatewayHandler);
         badGatewayHandler.setNext(serviceUnavailableHandler);
+        serviceUnavailableHandler.setNext(notModifiedHandler);
 
         // Set first handler
         firstHandler = notFoundHandler;
@@ -0,0 +1,23 @@
+package org.example.webbrowser.chain;
+
+import org.example.webbrowser.HTTPResponse;
+
+/**
+ * Concrete Handler for HTTP 304 Not Modified responses
+ * 
+ * Handles answers to conditional requests (If-None-Match / If-Modified-Since).
+ * The server sends no body, the cached copy is still valid and should be used.
+ */
+public class NotModifiedHandler extends AbstractHTTPHandler {
+    
+    @Override
+    protected boolean canHandle(HTTPResponse response) {
+        return response.getStatusCode() == 304;
+    }
+    
+    @Override
+    protected void processResponse(HTTPResponse response) {
+        response.getHeaders().put("X-Handled-By", "NotModifiedHandler");
+        response.getHeaders().put("X-Cache", "REVALIDATED");
+    }
+}
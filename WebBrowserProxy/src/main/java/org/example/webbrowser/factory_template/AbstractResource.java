@@ -0,0 +1,149 @@
+package org.example.webbrowser.factory_template;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Factory Method Pattern: base class for Products
+ *
+ * Keeps the load state and runs the synchronous and asynchronous loads of all
+ * adapters the same way. Adapters only say how their content is read.
+ *
+ * Every load gets a generation number. A read that finishes after its load was
+ * cancelled or replaced by a newer one does not change the state anymore.
+ */
+public abstract class AbstractResource implements Resource {
+
+    private LoadState loadState = LoadState.NOT_LOADED;
+    private long generation;
+    private CompletableFuture<Resource> pendingLoad;
+
+    /**
+     * Reads the content of the underlying file, called by load() and loadAsync()
+     */
+    protected abstract void loadContent();
+
+    @Override
+    public void load() {
+        readContent(startLoad(null));
+    }
+
+    @Override
+    public synchronized CompletionStage<Resource> loadAsync(Executor executor) {
+        if (pendingLoad != null && (loadState == LoadState.LOADING || loadState == LoadState.LOADED)) {
+            return pendingLoad.minimalCompletionStage();
+        }
+        if (getLoadState() == LoadState.LOADED) {
+            // Content was set or loaded synchronously before
+            return CompletableFuture.completedFuture(this);
+        }
+
+        CompletableFuture<Resource> load = new CompletableFuture<>();
+        long current = startLoad(load);
+        try {
+            executor.execute(() -> {
+                if (load.isDone()) {
+                    // Cancelled before it started
+                    return;
+                }
+                try {
+                    IOException error = readContent(current);
+                    if (error == null) {
+                        load.complete(this);
+                    } else {
+                        load.completeExceptionally(error);
+                    }
+                } catch (RuntimeException e) {
+                    load.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finish(current, LoadState.FAILED);
+            load.completeExceptionally(e);
+        }
+        return load.minimalCompletionStage();
+    }
+
+    @Override
+    public synchronized boolean cancel() {
+        if (pendingLoad == null || loadState != LoadState.LOADING) {
+            return false;
+        }
+        loadState = LoadState.CANCELLED;
+        generation++;
+        pendingLoad.cancel(false);
+        return true;
+    }
+
+    /**
+     * @return Load state; content that was set without loading (e.g. the main HTML) counts as loaded
+     */
+    @Override
+    public synchronized LoadState getLoadState() {
+        if (loadState == LoadState.NOT_LOADED && isLoaded()) {
+            return LoadState.LOADED;
+        }
+        return loadState;
+    }
+
+    /**
+     * Starts a new load generation, older reads can no longer change the state
+     *
+     * @param load Future of an asynchronous load, null for load()
+     * @return Generation of the new load
+     */
+    private synchronized long startLoad(CompletableFuture<Resource> load) {
+        pendingLoad = load;
+        loadState = LoadState.LOADING;
+        return ++generation;
+    }
+
+    /**
+     * Moves LOADING to the given state, only if the load is still the current one
+     */
+    private synchronized void finish(long loadGeneration, LoadState state) {
+        if (generation == loadGeneration && loadState == LoadState.LOADING) {
+            loadState = state;
+        }
+    }
+
+    /**
+     * Runs loadContent() and records LOADED or FAILED for its generation
+     *
+     * @return null if content was read, otherwise the reason it was not
+     */
+    private IOException readContent(long loadGeneration) {
+        try {
+            loadContent();
+        } catch (RuntimeException e) {
+            finish(loadGeneration, LoadState.FAILED);
+            throw e;
+        }
+
+        // The file classes report read errors themselves and leave the content empty,
+        // an empty file is read successfully all the same
+        boolean loaded = isLoaded() || isEmptyFile();
+        finish(loadGeneration, loaded ? LoadState.LOADED : LoadState.FAILED);
+        return loaded ? null : new IOException("File missing or unreadable: " + getFilePath());
+    }
+
+    private boolean isEmptyFile() {
+        String filePath = getFilePath();
+        if (filePath == null) {
+            return false;
+        }
+        try {
+            Path file = Paths.get(filePath);
+            return Files.isRegularFile(file) && Files.isReadable(file) && Files.size(file) == 0;
+        } catch (IOException | InvalidPathException e) {
+            return false;
+        }
+    }
+}
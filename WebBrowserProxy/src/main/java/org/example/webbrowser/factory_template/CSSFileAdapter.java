@@ -8,7 +8,7 @@ import org.example.webbrowser.visitor.ResourceVisitor;
  *
  * This adapter allows existing CSSFile class to work with the new Resource interface
  */
-public class CSSFileAdapter implements Resource {
+public class CSSFileAdapter extends AbstractResource {
 
     private CSSFile cssFile;
 
@@ -32,7 +32,7 @@ public class CSSFileAdapter implements Resource {
     }
 
     @Override
-    public void load() {
+    protected void loadContent() {
         cssFile.loadCSS();
     }
 
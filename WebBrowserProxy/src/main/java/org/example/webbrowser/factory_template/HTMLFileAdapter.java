@@ -8,7 +8,7 @@ import org.example.webbrowser.visitor.ResourceVisitor;
  *
  * This adapter allows existing HTMLFile class to work with the new Resource interface
  */
-public class HTMLFileAdapter implements Resource {
+public class HTMLFileAdapter extends AbstractResource {
 
     private HTMLFile htmlFile;
 
@@ -32,7 +32,7 @@ public class HTMLFileAdapter implements Resource {
     }
 
     @Override
-    public void load() {
+    protected void loadContent() {
         htmlFile.loadHTML();
     }
 
@@ -8,7 +8,7 @@ import org.example.webbrowser.visitor.ResourceVisitor;
  *
  * This adapter allows existing JSFile class to work with the new Resource interface
  */
-public class JSFileAdapter implements Resource {
+public class JSFileAdapter extends AbstractResource {
 
     private JSFile jsFile;
 
@@ -32,7 +32,7 @@ public class JSFileAdapter implements Resource {
     }
 
     @Override
-    public void load() {
+    protected void loadContent() {
         jsFile.loadJS();
     }
 
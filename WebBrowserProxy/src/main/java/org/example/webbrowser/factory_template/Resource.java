@@ -2,6 +2,9 @@ package org.example.webbrowser.factory_template;
 
 import org.example.webbrowser.visitor.ResourceVisitor;
 
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
 /**
  * Factory Method Pattern: Product Interface
  * 
@@ -9,6 +12,17 @@ import org.example.webbrowser.visitor.ResourceVisitor;
  * This allows uniform handling of different resource types
  */
 public interface Resource {
+
+    /**
+     * Where a resource is in loading
+     */
+    enum LoadState {
+        NOT_LOADED,
+        LOADING,
+        LOADED,
+        FAILED,
+        CANCELLED
+    }
     
     /**
      * Gets the file name of the resource
@@ -32,10 +46,32 @@ public interface Resource {
     String getResourceType();
     
     /**
-     * Loads the resource content
+     * Loads the resource content, blocks until it is read
      * Implementation depends on specific resource type
      */
     void load();
+
+    /**
+     * Loads the resource content without blocking the caller.
+     * While a load is running, or after it succeeded, the same result is returned.
+     *
+     * @param executor Where the content is read
+     * @return Stage completed with this resource, exceptionally if loading failed or was cancelled
+     */
+    CompletionStage<Resource> loadAsync(Executor executor);
+
+    /**
+     * Cancels a running loadAsync(). Its stage completes with CancellationException right away;
+     * a file read that already started cannot be interrupted and its result is ignored.
+     *
+     * @return true if a load was cancelled by this call
+     */
+    boolean cancel();
+
+    /**
+     * @return Current load state
+     */
+    LoadState getLoadState();
     
     /**
      * Gets the content of the resource
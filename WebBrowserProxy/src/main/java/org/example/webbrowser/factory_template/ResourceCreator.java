@@ -1,5 +1,7 @@
 package org.example.webbrowser.factory_template;
 
+import org.example.webbrowser.fetch.ResourceReference;
+
 /**
  * Factory Method Pattern: Creator (Abstract Creator)
  */
@@ -13,4 +15,13 @@ public abstract class ResourceCreator {
      * @return Resource object (Product)
      */
     public abstract Resource createResource(String fileName, String filePath);
+
+    /**
+     * Factory Method for references found in a document: the product is chosen by
+     * the element the URL came from, not by its extension
+     *
+     * @param reference Reference found by HtmlResourceScanner
+     * @return Resource object (Product), or null if there is no product for this kind of resource
+     */
+    public abstract Resource createResource(ResourceReference reference);
 }
\ No newline at end of file
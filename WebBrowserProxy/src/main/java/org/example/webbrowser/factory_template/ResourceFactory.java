@@ -1,6 +1,7 @@
 package org.example.webbrowser.factory_template;
 
 import org.example.webbrowser.*;
+import org.example.webbrowser.fetch.ResourceReference;
 import org.example.webbrowser.proxy.ImageProxy;
 import org.example.webbrowser.visitor.ImageResourceAdapter;
 
@@ -54,6 +55,59 @@ public class ResourceFactory extends ResourceCreator {
         }
     }
 
+    /**
+     * Creates Resource by the element the reference was found in, so URLs without
+     * an extension ("/style?v=2", "/avatar/12") get the right type too
+     *
+     * @param reference Reference found in a document
+     * @return Resource object, or null for fonts (no product for them)
+     */
+    @Override
+    public Resource createResource(ResourceReference reference) {
+        String folder = reference.getFolder();
+        if (!folder.equals("css") && !folder.equals("js") && !folder.equals("images")) {
+            return null;
+        }
+
+        String filePath = reference.getUrl();
+        String fileName = getFileNameFromUrl(filePath);
+
+        System.out.println("[ResourceFactory] Creating resource: " + fileName + " (" + reference.getType() + ")");
+
+        switch (folder) {
+            case "css":
+                return new CSSFileAdapter(new CSSFile(fileName, filePath));
+
+            case "js":
+                return new JSFileAdapter(new JSFile(fileName, filePath));
+
+            default:
+                return new ImageResourceAdapter(new ImageProxy(fileName, filePath));
+        }
+    }
+
+    /**
+     * Last path segment of a URL, without query and fragment
+     *
+     * @param url Absolute or relative URL
+     * @return File name, or the whole URL if it has no path
+     */
+    private String getFileNameFromUrl(String url) {
+        int end = url.length();
+        int query = url.indexOf('?');
+        int fragment = url.indexOf('#');
+        if (query >= 0) {
+            end = query;
+        }
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+
+        int lastSlash = url.lastIndexOf('/', end - 1);
+        String fileName = url.substring(lastSlash + 1, end);
+        return fileName.isEmpty() ? url : fileName;
+    }
+
     /**
      * Extracts file extension from filename
      *
@@ -0,0 +1,177 @@
+package org.example.webbrowser.fetch;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancellation signal and deadline shared by every request of one navigation
+ *
+ * Whoever starts a request registers how to abort it (cancel the exchange,
+ * close the body stream) with onCancel(). Cancelling the token, or reaching its
+ * deadline, runs all of those actions at once, so downloads of a page the user
+ * already left stop right away instead of running into their own timeouts.
+ *
+ * The page deadline can be changed with -Dwebbrowser.fetch.pageTimeout=SECONDS (default 30).
+ */
+public class CancellationToken {
+
+    private static final long DEFAULT_PAGE_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Token that is never cancelled, for requests that do not belong to a navigation
+     */
+    public static final CancellationToken NONE = new CancellationToken(Long.MAX_VALUE);
+
+    /**
+     * Single daemon thread that cancels tokens when their deadline passes
+     */
+    private static ScheduledExecutorService deadlineTimer;
+
+    private final long deadline;
+    private final Set<Runnable> actions = new LinkedHashSet<>();
+    private ScheduledFuture<?> deadlineTask;
+    private String reason;
+
+    private CancellationToken(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates a token that cancels itself after the given time
+     *
+     * @param timeoutMillis Time the whole navigation may take
+     * @return New token
+     */
+    public static CancellationToken withTimeout(long timeoutMillis) {
+        CancellationToken token = new CancellationToken(System.currentTimeMillis() + timeoutMillis);
+        ScheduledFuture<?> task = getDeadlineTimer().schedule(
+                () -> token.cancel("page deadline of " + timeoutMillis + " ms exceeded"),
+                timeoutMillis, TimeUnit.MILLISECONDS);
+        synchronized (token) {
+            token.deadlineTask = task;
+        }
+        return token;
+    }
+
+    /**
+     * Creates a token for a new page navigation with the configured page deadline
+     *
+     * @return New token
+     */
+    public static CancellationToken forNavigation() {
+        return withTimeout(TimeUnit.SECONDS.toMillis(
+                Long.getLong("webbrowser.fetch.pageTimeout", DEFAULT_PAGE_TIMEOUT_SECONDS)));
+    }
+
+    private static synchronized ScheduledExecutorService getDeadlineTimer() {
+        if (deadlineTimer == null) {
+            deadlineTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "fetch-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return deadlineTimer;
+    }
+
+    /**
+     * Cancels the token and aborts every registered request. Later calls do nothing.
+     *
+     * @param reason Why the navigation was cancelled, shown in logs and exceptions
+     */
+    public void cancel(String reason) {
+        if (this == NONE) {
+            return;
+        }
+
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (this.reason != null) {
+                return;
+            }
+            this.reason = reason;
+            toRun = new ArrayList<>(actions);
+            actions.clear();
+            if (deadlineTask != null) {
+                deadlineTask.cancel(false);
+            }
+        }
+
+        for (Runnable action : toRun) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println("[CancellationToken] Abort action failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * @return Why the token was cancelled, or null if it was not
+     */
+    public synchronized String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return Time in epoch millis when the token cancels itself (Long.MAX_VALUE for none)
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @throws InterruptedIOException if the token was cancelled
+     */
+    public void throwIfCancelled() throws InterruptedIOException {
+        String cancelReason = getReason();
+        if (cancelReason != null) {
+            throw new InterruptedIOException("Navigation cancelled: " + cancelReason);
+        }
+    }
+
+    /**
+     * Registers how to abort a running request. Runs the action right away if the token
+     * is already cancelled. Close the returned registration once the request is done.
+     *
+     * @param action Aborts the request, must not block
+     * @return Registration that removes the action when closed
+     */
+    public Registration onCancel(Runnable action) {
+        if (this == NONE) {
+            return () -> { };
+        }
+
+        synchronized (this) {
+            if (reason == null) {
+                actions.add(action);
+                return () -> {
+                    synchronized (this) {
+                        actions.remove(action);
+                    }
+                };
+            }
+        }
+        action.run();
+        return () -> { };
+    }
+
+    /**
+     * Registered abort action, close() does not throw
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
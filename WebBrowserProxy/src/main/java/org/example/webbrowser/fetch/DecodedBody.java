@@ -0,0 +1,229 @@
+package org.example.webbrowser.fetch;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpHeaders;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Response body decoded according to its Content-Encoding
+ *
+ * Decompression happens while the body is read, so nothing is buffered besides
+ * the decoder's own window. Counts bytes received on the wire and bytes after
+ * decoding; both are reported to the pool metrics when the body is closed.
+ */
+public class DecodedBody extends FilterInputStream {
+
+    /**
+     * Encodings advertised in Accept-Encoding by every pooled request
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final WireCounter wire;
+    private final String encoding;
+    private final HttpClientMetrics metrics;
+    private long decodedBytes;
+    private boolean closed;
+
+    private DecodedBody(InputStream decoded, WireCounter wire, String encoding, HttpClientMetrics metrics) {
+        super(decoded);
+        this.wire = wire;
+        this.encoding = encoding;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wraps a raw response body
+     *
+     * @param body Body as received from the server
+     * @param headers Response headers (Content-Encoding decides the decoder)
+     * @param metrics Metrics to report byte counts to on close, or null
+     * @return Decoded body stream
+     * @throws IOException if the encoding is not supported
+     */
+    static DecodedBody open(InputStream body, HttpHeaders headers, HttpClientMetrics metrics) throws IOException {
+        String encoding = String.join(",", headers.allValues("Content-Encoding")).trim().toLowerCase(Locale.ROOT);
+        WireCounter wire = new WireCounter(body);
+
+        // Encodings are listed in the order they were applied, so they are undone from the last one
+        InputStream decoded = wire;
+        String[] codings = encoding.split(",");
+        for (int i = codings.length - 1; i >= 0; i--) {
+            decoded = decoder(decoded, codings[i].trim());
+        }
+
+        return new DecodedBody(decoded, wire, encoding.isEmpty() ? "identity" : encoding, metrics);
+    }
+
+    private static InputStream decoder(InputStream in, String coding) throws IOException {
+        switch (coding) {
+            case "":
+            case "identity":
+                return in;
+            case "gzip":
+            case "x-gzip":
+                return isEmpty(in) ? InputStream.nullInputStream() : new GZIPInputStream(in, BUFFER_SIZE);
+            case "deflate":
+                return inflate(in);
+            default:
+                throw new IOException("Unsupported Content-Encoding: " + coding);
+        }
+    }
+
+    /**
+     * "deflate" should be zlib-wrapped, but some servers send raw deflate data, so the header is checked first
+     */
+    private static InputStream inflate(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        byte[] header = new byte[2];
+        int read = pushback.readNBytes(header, 0, 2);
+        if (read == 0) {
+            return InputStream.nullInputStream();
+        }
+        pushback.unread(header, 0, read);
+
+        boolean zlib = read == 2 && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(pushback, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Empty bodies (HEAD, some errors) still carry Content-Encoding, but have no gzip header to read
+     */
+    private static boolean isEmpty(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            return false;
+        }
+        in.mark(1);
+        boolean empty = in.read() < 0;
+        in.reset();
+        return empty;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            decodedBytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            decodedBytes += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        decodedBytes += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            super.close();
+        } finally {
+            if (metrics != null) {
+                metrics.bodyReceived(wire.count, decodedBytes, !encoding.equals("identity"));
+            }
+        }
+    }
+
+    /**
+     * @return Content-Encoding of the response, "identity" if it was not encoded
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return Bytes received from the server so far
+     */
+    public long getWireBytes() {
+        return wire.count;
+    }
+
+    /**
+     * @return Bytes read after decoding so far
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    /**
+     * Counts raw bytes pulled from the network by the decoder
+     */
+    private static class WireCounter extends FilterInputStream {
+        private long count;
+        private long markedCount;
+
+        WireCounter(InputStream in) {
+            super(in.markSupported() ? in : new BufferedInputStream(in, BUFFER_SIZE));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            super.mark(readLimit);
+            markedCount = count;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            count = markedCount;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.webbrowser.fetch;
+
+/**
+ * Receives progress of a page fetch
+ *
+ * Called from download threads, so implementations that touch the UI
+ * must hand the update over to the UI thread themselves.
+ */
+@FunctionalInterface
+public interface FetchProgressListener {
+
+    /**
+     * Listener that ignores every update
+     */
+    FetchProgressListener NONE = (message, done, total) -> { };
+
+    /**
+     * @param message Current step, e.g. "Downloading resources"
+     * @param done Resources finished so far (downloaded, reused, failed or aborted)
+     * @param total Resources discovered so far, 0 while the HTML itself is fetched
+     */
+    void onProgress(String message, int done, int total);
+}
@@ -0,0 +1,261 @@
+package org.example.webbrowser.fetch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive per-host limit of concurrent downloads (AIMD)
+ *
+ * Every host starts with a small limit. Each time a full window of requests
+ * (as many as the current limit) comes back without slowing down, the limit grows
+ * by one. Latency above twice the host's best observed latency, timeouts and
+ * 429 / 503 responses halve it. Limits never go below one or above the hard
+ * per-host cap, so a single origin is never hammered no matter how fast it is.
+ *
+ * Downloads that do not fit are queued per host by priority and started when
+ * a running one releases its slot, so no worker thread waits for a busy host.
+ *
+ * Settings can be changed with system properties (read once at startup):
+ * -Dwebbrowser.fetch.maxPerHost=N     hard cap of concurrent downloads per host (default 6)
+ * -Dwebbrowser.fetch.initialPerHost=N limit a new host starts with (default 2)
+ */
+public class HostConcurrencyLimiter {
+
+    private static final int DEFAULT_MAX_PER_HOST = 6;
+    private static final int DEFAULT_INITIAL_PER_HOST = 2;
+
+    /**
+     * Latency above this multiple of the host's baseline counts as overload
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * Latency must also grow by at least this much, a few ms of jitter on a fast host is not overload
+     */
+    private static final long MIN_LATENCY_INCREASE_MILLIS = 50;
+
+    /**
+     * Share of every sample's distance the baseline moves towards it
+     */
+    private static final double BASELINE_DRIFT = 0.05;
+
+    private static final double BACKOFF_FACTOR = 0.5;
+
+    /**
+     * Responses of requests started before a decrease still carry the old overload,
+     * so the limit is not decreased again within this time
+     */
+    private static final long DECREASE_COOLDOWN_MILLIS = 1000;
+
+    private final int maxPerHost;
+    private final int initialPerHost;
+    private final Map<String, HostLimit> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    HostConcurrencyLimiter() {
+        this(Integer.getInteger("webbrowser.fetch.maxPerHost", DEFAULT_MAX_PER_HOST),
+                Integer.getInteger("webbrowser.fetch.initialPerHost", DEFAULT_INITIAL_PER_HOST));
+    }
+
+    HostConcurrencyLimiter(int maxPerHost, int initialPerHost) {
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.initialPerHost = Math.max(1, Math.min(initialPerHost, this.maxPerHost));
+    }
+
+    private HostLimit getHost(String host) {
+        return hosts.computeIfAbsent(String.valueOf(host), key -> new HostLimit(initialPerHost));
+    }
+
+    /**
+     * Runs start right away if the host has a free slot, otherwise when one is released.
+     * start should only hand the download to an executor; the download must call
+     * release(host) when it is done, also when it fails.
+     *
+     * @param host Host the download goes to
+     * @param priority Order among downloads waiting for the same host
+     * @param start Starts the download
+     */
+    public void whenFree(String host, ResourcePriority priority, Runnable start) {
+        HostLimit limit = getHost(host);
+        synchronized (limit) {
+            if (limit.inFlight >= limit.limit) {
+                limit.waiting.add(new Waiting(priority, sequence.getAndIncrement(), start));
+                return;
+            }
+            limit.started();
+        }
+        start.run();
+    }
+
+    /**
+     * Frees the host slot of a finished download and starts the next waiting ones
+     *
+     * @param host Host the download went to
+     */
+    public void release(String host) {
+        HostLimit limit = getHost(host);
+        List<Runnable> starts;
+        synchronized (limit) {
+            limit.inFlight--;
+            starts = limit.pollStartable();
+        }
+        starts.forEach(Runnable::run);
+    }
+
+    /**
+     * Feeds a response into the host's limit
+     *
+     * @param host Host that answered
+     * @param latencyMillis Time from sending the request until response headers arrived
+     * @param statusCode HTTP status code
+     */
+    public void onResponse(String host, long latencyMillis, int statusCode) {
+        HostLimit limit = getHost(host);
+        if (statusCode == 429 || statusCode == 503) {
+            decrease(host, limit, "HTTP " + statusCode);
+            return;
+        }
+
+        long baseline;
+        List<Runnable> starts = List.of();
+        synchronized (limit) {
+            if (limit.baselineMillis < 0 || latencyMillis < limit.baselineMillis) {
+                limit.baselineMillis = latencyMillis;
+            }
+            baseline = limit.baselineMillis;
+            // Creeps up slowly, so a host that got slower for good is not backed off forever
+            limit.baselineMillis += Math.round((latencyMillis - baseline) * BASELINE_DRIFT);
+
+            // Small absolute jitter on a fast host is not overload
+            boolean slow = latencyMillis > Math.max(baseline * LATENCY_TOLERANCE, baseline + MIN_LATENCY_INCREASE_MILLIS);
+            if (!slow) {
+                limit.successes++;
+                // Only grow a limit that is actually used, otherwise it says nothing about the host
+                if (limit.successes >= limit.limit && limit.limit < maxPerHost && limit.peakInFlight >= limit.limit) {
+                    limit.limit++;
+                    limit.successes = 0;
+                    limit.peakInFlight = limit.inFlight;
+                    starts = limit.pollStartable();
+                }
+                baseline = -1;
+            }
+        }
+
+        if (baseline >= 0) {
+            decrease(host, limit, "latency " + latencyMillis + " ms, baseline " + baseline + " ms");
+        }
+        starts.forEach(Runnable::run);
+    }
+
+    /**
+     * Request timed out or the connection could not be opened in time
+     *
+     * @param host Host that did not answer
+     */
+    public void onTimeout(String host) {
+        decrease(host, getHost(host), "timeout");
+    }
+
+    private void decrease(String host, HostLimit limit, String reason) {
+        int before;
+        int after;
+        synchronized (limit) {
+            long now = System.currentTimeMillis();
+            limit.successes = 0;
+            if (now - limit.lastDecrease < DECREASE_COOLDOWN_MILLIS) {
+                return;
+            }
+            limit.lastDecrease = now;
+            limit.decreases++;
+            before = limit.limit;
+            after = Math.max(1, (int) (limit.limit * BACKOFF_FACTOR));
+            limit.limit = after;
+            limit.peakInFlight = 0;
+        }
+        if (after != before) {
+            System.out.println("[HostLimiter] " + host + ": limit " + before + " -> " + after + " (" + reason + ")");
+        }
+    }
+
+    /**
+     * @param host Host name
+     * @return Current concurrency limit of the host
+     */
+    public int getLimit(String host) {
+        HostLimit limit = hosts.get(String.valueOf(host));
+        return limit == null ? initialPerHost : limit.limit;
+    }
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * Prints the current limit of every host seen so far
+     */
+    public void printReport() {
+        hosts.forEach((host, limit) -> {
+            synchronized (limit) {
+                System.out.println("[HostLimiter] " + host + ": limit " + limit.limit + " of " + maxPerHost +
+                        ", baseline " + limit.baselineMillis + " ms, " + limit.decreases + " backoffs");
+            }
+        });
+    }
+
+    /**
+     * State of one host, guarded by its own monitor
+     */
+    private static class HostLimit {
+        private int limit;
+        private int inFlight;
+        private int peakInFlight;
+        private int successes;
+        private long baselineMillis = -1;
+        private long lastDecrease;
+        private int decreases;
+        private final PriorityQueue<Waiting> waiting = new PriorityQueue<>();
+
+        HostLimit(int limit) {
+            this.limit = limit;
+        }
+
+        void started() {
+            inFlight++;
+            peakInFlight = Math.max(peakInFlight, inFlight);
+        }
+
+        /**
+         * Takes as many waiting downloads as there are free slots, a limit that grew may free more than one
+         */
+        List<Runnable> pollStartable() {
+            List<Runnable> starts = new ArrayList<>();
+            while (inFlight < limit && !waiting.isEmpty()) {
+                started();
+                starts.add(waiting.poll().start);
+            }
+            return starts;
+        }
+    }
+
+    private static class Waiting implements Comparable<Waiting> {
+        private final ResourcePriority priority;
+        private final long sequence;
+        private final Runnable start;
+
+        Waiting(ResourcePriority priority, long sequence, Runnable start) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.start = start;
+        }
+
+        @Override
+        public int compareTo(Waiting other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.webbrowser.fetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Character encoding of an HTML document, detected from its raw bytes
+ *
+ * Follows the order browsers use: byte order mark, then the charset parameter
+ * of Content-Type, then a meta charset declaration in the first 1024 bytes.
+ * Without any of them the page is taken as UTF-8. Only that bounded prefix is
+ * looked at, the document itself is never decoded here.
+ */
+public final class HtmlCharset {
+
+    /**
+     * Where the charset came from
+     */
+    public enum Source {
+        BOM,
+        CONTENT_TYPE,
+        META,
+        DEFAULT
+    }
+
+    /**
+     * Bytes scanned for a meta declaration, same limit as the HTML prescan
+     */
+    public static final int SNIFF_LIMIT = 1024;
+
+    private static final Pattern CONTENT_TYPE_CHARSET =
+            Pattern.compile("charset\\s*=\\s*[\"']?([^\"';\\s]+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Covers both <meta charset="x"> and <meta http-equiv="Content-Type" content="text/html; charset=x">
+     */
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+?charset\\s*=\\s*[\"']?\\s*([\\w.:+-]+)", Pattern.CASE_INSENSITIVE);
+
+    private static final byte[] ASCII_PROBE = "<a href=\"/\">".getBytes(StandardCharsets.US_ASCII);
+
+    private final Charset charset;
+    private final Source source;
+    private final int bomLength;
+
+    private HtmlCharset(Charset charset, Source source, int bomLength) {
+        this.charset = charset;
+        this.source = source;
+        this.bomLength = bomLength;
+    }
+
+    /**
+     * @param bytes Document bytes (only the first SNIFF_LIMIT are looked at)
+     * @param length Number of valid bytes
+     * @param contentType Content-Type header, or null
+     * @return Detected charset
+     */
+    public static HtmlCharset detect(byte[] bytes, int length, String contentType) {
+        HtmlCharset bom = fromBom(bytes, length);
+        if (bom != null) {
+            return bom;
+        }
+
+        Charset declared = fromContentType(contentType);
+        if (declared != null) {
+            return new HtmlCharset(declared, Source.CONTENT_TYPE, 0);
+        }
+
+        // ISO-8859-1 maps every byte to one char, so the ASCII markup is matched without decoding
+        String prefix = new String(bytes, 0, Math.min(length, SNIFF_LIMIT), StandardCharsets.ISO_8859_1);
+        Matcher meta = META_CHARSET.matcher(prefix);
+        if (meta.find()) {
+            Charset charset = forName(meta.group(1));
+            if (charset != null) {
+                // A document that reached the meta tag as ASCII cannot be UTF-16, browsers use UTF-8 then
+                if (!isAsciiCompatible(charset)) {
+                    charset = StandardCharsets.UTF_8;
+                }
+                return new HtmlCharset(charset, Source.META, 0);
+            }
+        }
+
+        return new HtmlCharset(StandardCharsets.UTF_8, Source.DEFAULT, 0);
+    }
+
+    /**
+     * Detects the charset of a saved document from the start of the file
+     *
+     * @param file Saved HTML file
+     * @param contentType Content-Type the file was served with, or null
+     * @return Detected charset
+     * @throws IOException if the file cannot be read
+     */
+    public static HtmlCharset sniff(Path file, String contentType) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] prefix = in.readNBytes(SNIFF_LIMIT);
+            return detect(prefix, prefix.length, contentType);
+        }
+    }
+
+    /**
+     * @param contentType Content-Type header value, or null
+     * @return Charset parameter if present and supported, otherwise null
+     */
+    public static Charset fromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_TYPE_CHARSET.matcher(contentType);
+        return matcher.find() ? forName(matcher.group(1)) : null;
+    }
+
+    private static HtmlCharset fromBom(byte[] bytes, int length) {
+        if (length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            return new HtmlCharset(StandardCharsets.UTF_8, Source.BOM, 3);
+        }
+        if (length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+            return new HtmlCharset(StandardCharsets.UTF_16BE, Source.BOM, 2);
+        }
+        if (length >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE) {
+            return new HtmlCharset(StandardCharsets.UTF_16LE, Source.BOM, 2);
+        }
+        return null;
+    }
+
+    private static Charset forName(String name) {
+        try {
+            return Charset.forName(name.trim().toLowerCase(Locale.ROOT));
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * True if ASCII markup has the same bytes in this charset, so tags and URLs
+     * can be found and replaced in the raw bytes
+     *
+     * @param charset Charset to check
+     * @return false for UTF-16, UTF-32 and similar
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        return Arrays.equals(ASCII_PROBE, new String(ASCII_PROBE, StandardCharsets.US_ASCII).getBytes(charset));
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * @return Length of the byte order mark at the start of the document, 0 if there is none
+     */
+    public int getBomLength() {
+        return bomLength;
+    }
+
+    /**
+     * @return true if a saved copy needs a meta tag to be read with this charset again
+     */
+    public boolean needsMetaDeclaration() {
+        return source == Source.CONTENT_TYPE || source == Source.DEFAULT;
+    }
+
+    @Override
+    public String toString() {
+        return charset.name() + " (" + source.name().toLowerCase(Locale.ROOT) + ")";
+    }
+}
@@ -0,0 +1,516 @@
+package org.example.webbrowser.fetch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Single-pass HTML tokenizer that finds all downloadable resources
+ *
+ * Walks the document once and reports stylesheets, scripts, images (including
+ * srcset candidates and picture sources), icons, preloads, and url()/@import
+ * references from style attributes and style blocks. Script bodies and comments
+ * are skipped. Nothing is copied while scanning: every reference keeps offsets
+ * into the original string.
+ * Each reference gets a download priority from where and how it is used.
+ *
+ * Elements decide the type, so "/style?v=2" in a stylesheet link or "/avatar/12"
+ * in an img is found too. Extensions are only checked where the element allows
+ * several kinds (e.g. audio and video sources are skipped, picture sources are not).
+ */
+public class HtmlResourceScanner {
+
+    private static final String[] IMAGE_EXTENSIONS = {"jpg", "jpeg", "png", "gif", "svg", "webp", "ico", "bmp"};
+    private static final String[] CSS_IMAGE_EXTENSIONS = {"jpg", "jpeg", "png", "gif", "svg", "webp"};
+    private static final String[] FONT_EXTENSIONS = {"woff2", "woff", "ttf", "eot", "otf"};
+
+    /**
+     * Number of leading non-lazy images treated as visible without scrolling
+     */
+    private static final int ABOVE_THE_FOLD_IMAGES = 4;
+
+    /**
+     * Scans HTML and returns resource references in document order
+     *
+     * @param html HTML source
+     * @return List of references with offsets into html
+     */
+    public List<ResourceReference> scan(String html) {
+        List<ResourceReference> references = new ArrayList<>();
+        int length = html.length();
+        int i = 0;
+        int images = 0;
+
+        while (i < length) {
+            int tagStart = html.indexOf('<', i);
+            if (tagStart < 0 || tagStart + 1 >= length) {
+                break;
+            }
+
+            if (html.startsWith("<!--", tagStart)) {
+                int commentEnd = html.indexOf("-->", tagStart + 4);
+                i = commentEnd < 0 ? length : commentEnd + 3;
+                continue;
+            }
+
+            if (!Character.isLetter(html.charAt(tagStart + 1))) {
+                // Closing tags, doctype, stray '<' in text
+                int tagEnd = html.indexOf('>', tagStart + 1);
+                i = tagEnd < 0 ? length : tagEnd + 1;
+                continue;
+            }
+
+            Tag tag = readTag(html, tagStart + 1);
+            int first = references.size();
+            collectFromTag(html, tag, images < ABOVE_THE_FOLD_IMAGES, references);
+            if (references.size() - first > 1) {
+                // Attributes are read in a fixed order, rewrite() needs them in document order
+                references.subList(first, references.size()).sort(Comparator.comparingInt(ResourceReference::getStart));
+            }
+            if (tag.name.equals("img") && !isLazy(tag, html)) {
+                images++;
+            }
+            i = tag.end;
+
+            // Raw text up to the closing tag, also after "<script/>": HTML ignores that slash here
+            if (tag.name.equals("script")) {
+                i = skipPast(html, "</script", i);
+            } else if (tag.name.equals("style")) {
+                int closeStart = indexOfIgnoreCase(html, "</style", i);
+                int contentEnd = closeStart < 0 ? length : closeStart;
+                scanCss(html, i, contentEnd, references);
+                i = contentEnd;
+            }
+        }
+
+        return references;
+    }
+
+    /**
+     * Replaces referenced URLs in a single output buffer
+     *
+     * @param html Original HTML that was scanned
+     * @param references References returned by scan(), in document order
+     * @param replacement Returns new value for a reference, or null to keep it
+     * @return Rewritten HTML
+     */
+    public static String rewrite(String html, List<ResourceReference> references,
+                                 Function<ResourceReference, String> replacement) {
+        StringBuilder result = new StringBuilder(html.length() + references.size() * 16);
+        int position = 0;
+
+        for (ResourceReference reference : references) {
+            String newValue = replacement.apply(reference);
+            if (newValue == null || reference.getStart() < position) {
+                continue;
+            }
+            result.append(html, position, reference.getStart());
+            result.append(newValue);
+            position = reference.getEnd();
+        }
+        result.append(html, position, html.length());
+
+        return result.toString();
+    }
+
+    /**
+     * Classifies a tag by its attributes and adds found references
+     *
+     * @param aboveTheFold true while fewer than ABOVE_THE_FOLD_IMAGES images were seen
+     */
+    private void collectFromTag(String html, Tag tag, boolean aboveTheFold, List<ResourceReference> references) {
+        switch (tag.name) {
+            case "link": {
+                Attribute href = tag.get("href");
+                if (href == null) {
+                    break;
+                }
+                String rel = tag.get("rel") != null ? tag.get("rel").value(html).toLowerCase(Locale.ROOT) : "";
+                if (hasToken(rel, "preload") || hasToken(rel, "modulepreload")) {
+                    addPreload(html, tag, href, hasToken(rel, "modulepreload"), references);
+                } else if ((hasToken(rel, "stylesheet") && !hasToken(rel, "alternate"))
+                        || containsExtension(href.value(html), "css")) {
+                    references.add(href.toReference(html, "css", "link", ResourcePriority.RENDER_BLOCKING_CSS));
+                } else if (isIconRel(rel)) {
+                    references.add(href.toReference(html, "images", "icon", ResourcePriority.OTHER));
+                }
+                break;
+            }
+            case "script": {
+                Attribute src = tag.get("src");
+                if (src != null) {
+                    boolean deferred = tag.get("async") != null || tag.get("defer") != null || isModule(tag, html);
+                    references.add(src.toReference(html, "js", "script",
+                            deferred ? ResourcePriority.OTHER : ResourcePriority.SYNC_SCRIPT));
+                }
+                break;
+            }
+            case "img": {
+                boolean visible = aboveTheFold && !isLazy(tag, html);
+                ResourcePriority priority = visible ? ResourcePriority.ABOVE_THE_FOLD_IMAGE : ResourcePriority.OTHER;
+                Attribute src = tag.get("src");
+                if (src != null) {
+                    references.add(src.toReference(html, "images", "img", priority));
+                }
+                addSrcset(html, tag.get("srcset"), "srcset", priority, references);
+                break;
+            }
+            case "source": {
+                // <picture> alternatives; audio / video sources are media, not page resources
+                addSrcset(html, tag.get("srcset"), "source", ResourcePriority.OTHER, references);
+                Attribute src = tag.get("src");
+                if (src != null && containsAnyExtension(src.value(html), IMAGE_EXTENSIONS)) {
+                    references.add(src.toReference(html, "images", "source", ResourcePriority.OTHER));
+                }
+                break;
+            }
+            default:
+                break;
+        }
+
+        Attribute style = tag.get("style");
+        if (style != null) {
+            scanCss(html, style.valueStart, style.valueEnd, references);
+        }
+    }
+
+    /**
+     * Finds url(...) and @import references inside CSS text
+     *
+     * @param text Text that contains CSS
+     * @param from Start offset of CSS region
+     * @param to End offset of CSS region (exclusive)
+     * @param references List to add references to
+     */
+    public void scanCss(String text, int from, int to, List<ResourceReference> references) {
+        int i = from;
+        int importStart = indexOfIgnoreCase(text, "@import", i, to);
+
+        while (i < to) {
+            int urlStart = indexOfIgnoreCase(text, "url(", i, to);
+            if (importStart >= 0 && importStart < i) {
+                // Search again only when the cached @import position was passed
+                importStart = indexOfIgnoreCase(text, "@import", i, to);
+            }
+
+            if (urlStart < 0 && importStart < 0) {
+                break;
+            }
+
+            if (importStart >= 0 && (urlStart < 0 || importStart < urlStart)) {
+                // @import "file.css" (the url() form is handled below)
+                int j = skipWhitespace(text, importStart + 7, to);
+                if (j < to && (text.charAt(j) == '"' || text.charAt(j) == '\'')) {
+                    int close = text.indexOf(text.charAt(j), j + 1);
+                    if (close > 0 && close < to) {
+                        addCssReference(text, j + 1, close, true, references);
+                        i = close + 1;
+                        continue;
+                    }
+                }
+                i = importStart + 7;
+                continue;
+            }
+
+            boolean isImport = isPrecededByImport(text, from, urlStart);
+            int j = skipWhitespace(text, urlStart + 4, to);
+            int valueStart;
+            int valueEnd;
+
+            if (j < to && (text.charAt(j) == '"' || text.charAt(j) == '\'')) {
+                valueStart = j + 1;
+                valueEnd = text.indexOf(text.charAt(j), valueStart);
+            } else {
+                valueStart = j;
+                valueEnd = text.indexOf(')', valueStart);
+            }
+
+            if (valueEnd < 0 || valueEnd > to) {
+                break;
+            }
+
+            // Trim whitespace of unquoted values
+            int trimmedStart = skipWhitespace(text, valueStart, valueEnd);
+            int trimmedEnd = valueEnd;
+            while (trimmedEnd > trimmedStart && Character.isWhitespace(text.charAt(trimmedEnd - 1))) {
+                trimmedEnd--;
+            }
+
+            addCssReference(text, trimmedStart, trimmedEnd, isImport, references);
+            i = valueEnd + 1;
+        }
+    }
+
+    private void addCssReference(String text, int start, int end, boolean isImport,
+                                 List<ResourceReference> references) {
+        if (start >= end) {
+            return;
+        }
+
+        String url = text.substring(start, end);
+        if (containsExtension(url, "css") && isImport) {
+            references.add(new ResourceReference(url, start, end, "css", "import", ResourcePriority.RENDER_BLOCKING_CSS));
+        } else if (containsAnyExtension(url, CSS_IMAGE_EXTENSIONS)) {
+            references.add(new ResourceReference(url, start, end, "images", "bg", ResourcePriority.OTHER));
+        } else if (containsAnyExtension(url, FONT_EXTENSIONS)) {
+            references.add(new ResourceReference(url, start, end, "fonts", "font", ResourcePriority.FONT));
+        }
+    }
+
+    /**
+     * Adds the URL of every srcset candidate ("a.png 1x, b.png 2x")
+     */
+    private void addSrcset(String html, Attribute srcset, String type, ResourcePriority priority,
+                           List<ResourceReference> references) {
+        if (srcset == null) {
+            return;
+        }
+        int i = srcset.valueStart;
+        int end = srcset.valueEnd;
+
+        while (i < end) {
+            while (i < end && (Character.isWhitespace(html.charAt(i)) || html.charAt(i) == ',')) {
+                i++;
+            }
+            int urlStart = i;
+            while (i < end && !Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            // A URL may contain commas (data: URLs), only trailing ones separate candidates
+            int urlEnd = i;
+            while (urlEnd > urlStart && html.charAt(urlEnd - 1) == ',') {
+                urlEnd--;
+            }
+            if (urlEnd > urlStart) {
+                references.add(new ResourceReference(html.substring(urlStart, urlEnd), urlStart, urlEnd,
+                        "images", type, priority));
+            }
+            if (urlEnd == i) {
+                // Skip the width / density descriptor
+                while (i < end && html.charAt(i) != ',') {
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * link rel=preload / modulepreload, typed by its "as" attribute
+     */
+    private void addPreload(String html, Tag tag, Attribute href, boolean module, List<ResourceReference> references) {
+        Attribute as = tag.get("as");
+        String destination = module ? "script" : as != null ? as.value(html).trim().toLowerCase(Locale.ROOT) : "";
+        switch (destination) {
+            case "style":
+                references.add(href.toReference(html, "css", "preload", ResourcePriority.RENDER_BLOCKING_CSS));
+                break;
+            case "script":
+                references.add(href.toReference(html, "js", "preload", ResourcePriority.OTHER));
+                break;
+            case "font":
+                references.add(href.toReference(html, "fonts", "preload", ResourcePriority.FONT));
+                break;
+            case "image":
+                // Preloaded images are usually the large one at the top of the page
+                references.add(href.toReference(html, "images", "preload", ResourcePriority.ABOVE_THE_FOLD_IMAGE));
+                addSrcset(html, tag.get("imagesrcset"), "preload", ResourcePriority.ABOVE_THE_FOLD_IMAGE, references);
+                break;
+            default:
+                // fetch, document, track and unknown destinations are not page resources
+                break;
+        }
+    }
+
+    private static boolean hasToken(String list, String token) {
+        int i = list.indexOf(token);
+        while (i >= 0) {
+            int end = i + token.length();
+            if ((i == 0 || Character.isWhitespace(list.charAt(i - 1)))
+                    && (end == list.length() || Character.isWhitespace(list.charAt(end)))) {
+                return true;
+            }
+            i = list.indexOf(token, end);
+        }
+        return false;
+    }
+
+    private boolean isPrecededByImport(String text, int from, int urlStart) {
+        int j = urlStart - 1;
+        while (j >= from && Character.isWhitespace(text.charAt(j))) {
+            j--;
+        }
+        int importStart = j - 6;
+        return importStart >= from && text.regionMatches(true, importStart, "@import", 0, 7);
+    }
+
+    private boolean isLazy(Tag tag, String html) {
+        Attribute loading = tag.get("loading");
+        return loading != null && loading.value(html).trim().equalsIgnoreCase("lazy");
+    }
+
+    private boolean isModule(Tag tag, String html) {
+        Attribute type = tag.get("type");
+        return type != null && type.value(html).trim().equalsIgnoreCase("module");
+    }
+
+    private boolean isIconRel(String rel) {
+        return hasToken(rel, "icon") || hasToken(rel, "apple-touch-icon");
+    }
+
+    /**
+     * Reads tag name and attributes starting right after '<'
+     */
+    private Tag readTag(String html, int nameStart) {
+        int length = html.length();
+        int j = nameStart;
+        while (j < length && (Character.isLetterOrDigit(html.charAt(j)) || html.charAt(j) == '-')) {
+            j++;
+        }
+
+        Tag tag = new Tag(html.substring(nameStart, j).toLowerCase(Locale.ROOT));
+
+        while (j < length) {
+            char c = html.charAt(j);
+            if (c == '>') {
+                j++;
+                break;
+            }
+            // A '/' of its own is the self-closing mark, in src=/a/> it belongs to the value
+            if (Character.isWhitespace(c) || c == '/') {
+                j++;
+                continue;
+            }
+
+            int attrNameStart = j;
+            while (j < length && !Character.isWhitespace(html.charAt(j))
+                    && html.charAt(j) != '=' && html.charAt(j) != '>' && html.charAt(j) != '/') {
+                j++;
+            }
+            String attrName = html.substring(attrNameStart, j).toLowerCase(Locale.ROOT);
+
+            j = skipWhitespace(html, j, length);
+            if (j >= length || html.charAt(j) != '=') {
+                tag.attributes.add(new Attribute(attrName, j, j));
+                continue;
+            }
+
+            j = skipWhitespace(html, j + 1, length);
+            if (j < length && (html.charAt(j) == '"' || html.charAt(j) == '\'')) {
+                char quote = html.charAt(j);
+                int close = html.indexOf(quote, j + 1);
+                if (close < 0) {
+                    close = length;
+                }
+                tag.attributes.add(new Attribute(attrName, j + 1, close));
+                j = close + 1;
+            } else {
+                int valueStart = j;
+                while (j < length && !Character.isWhitespace(html.charAt(j)) && html.charAt(j) != '>') {
+                    j++;
+                }
+                tag.attributes.add(new Attribute(attrName, valueStart, j));
+            }
+        }
+
+        tag.end = Math.min(j, length);
+        return tag;
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        int j = from;
+        while (j < to && Character.isWhitespace(text.charAt(j))) {
+            j++;
+        }
+        return j;
+    }
+
+    private static int skipPast(String html, String closingTag, int from) {
+        int closeStart = indexOfIgnoreCase(html, closingTag, from);
+        if (closeStart < 0) {
+            return html.length();
+        }
+        int closeEnd = html.indexOf('>', closeStart);
+        return closeEnd < 0 ? html.length() : closeEnd + 1;
+    }
+
+    /**
+     * Case-insensitive indexOf without lowercasing the whole document
+     */
+    static int indexOfIgnoreCase(String text, String needle, int from) {
+        return indexOfIgnoreCase(text, needle, from, text.length());
+    }
+
+    /**
+     * Same as indexOfIgnoreCase, but the match must end before the given offset
+     */
+    static int indexOfIgnoreCase(String text, String needle, int from, int to) {
+        char first = needle.charAt(0);
+        char firstUpper = Character.toUpperCase(first);
+        int last = Math.min(to, text.length()) - needle.length();
+
+        for (int i = Math.max(from, 0); i <= last; i++) {
+            char c = text.charAt(i);
+            if ((c == first || c == firstUpper) && text.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean containsExtension(String url, String extension) {
+        return indexOfIgnoreCase(url, "." + extension, 0) >= 0;
+    }
+
+    private static boolean containsAnyExtension(String url, String[] extensions) {
+        for (String extension : extensions) {
+            if (containsExtension(url, extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Start tag with attribute value offsets
+     */
+    private static class Tag {
+        private final String name;
+        private final List<Attribute> attributes = new ArrayList<>(4);
+        private int end;
+
+        Tag(String name) {
+            this.name = name;
+        }
+
+        Attribute get(String attributeName) {
+            for (Attribute attribute : attributes) {
+                if (attribute.name.equals(attributeName)) {
+                    return attribute;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class Attribute {
+        private final String name;
+        private final int valueStart;
+        private final int valueEnd;
+
+        Attribute(String name, int valueStart, int valueEnd) {
+            this.name = name;
+            this.valueStart = valueStart;
+            this.valueEnd = valueEnd;
+        }
+
+        String value(String html) {
+            return html.substring(valueStart, valueEnd);
+        }
+
+        ResourceReference toReference(String html, String folder, String type, ResourcePriority priority) {
+            return new ResourceReference(value(html), valueStart, valueEnd, folder, type, priority);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.webbrowser.fetch;
+
+import java.net.http.HttpClient;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool metrics for HttpClientPool
+ *
+ * The JDK client does not expose its connection pool, so connections are estimated
+ * per host: HTTP/2 multiplexes everything over one connection, and HTTP/1.1 needs
+ * one connection per request that was in flight at the same time.
+ * Everything above that number was served by a reused connection.
+ */
+public class HttpClientMetrics {
+
+    private final int poolSize;
+    private final int idleTimeoutSeconds;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final AtomicLong http1Responses = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+    private final AtomicLong compressedResponses = new AtomicLong();
+
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+
+    HttpClientMetrics(int poolSize, int idleTimeoutSeconds) {
+        this.poolSize = poolSize;
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    void requestStarted(String host) {
+        requests.incrementAndGet();
+        hosts.computeIfAbsent(String.valueOf(host), key -> new HostStats()).started();
+    }
+
+    void requestFinished(String host) {
+        HostStats stats = hosts.get(String.valueOf(host));
+        if (stats != null) {
+            stats.inFlight.decrementAndGet();
+        }
+    }
+
+    void responseReceived(String host, HttpClient.Version version) {
+        if (version == HttpClient.Version.HTTP_2) {
+            http2Responses.incrementAndGet();
+            HostStats stats = hosts.get(String.valueOf(host));
+            if (stats != null) {
+                stats.multiplexed = true;
+            }
+        } else {
+            http1Responses.incrementAndGet();
+        }
+    }
+
+    void bodyReceived(long wire, long decoded, boolean compressed) {
+        wireBytes.addAndGet(wire);
+        decodedBytes.addAndGet(decoded);
+        if (compressed) {
+            compressedResponses.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return Max number of idle connections passed to the JDK client (0 = unlimited)
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return Idle connection timeout passed to the JDK client, in seconds
+     */
+    public int getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getHttp2ResponseCount() {
+        return http2Responses.get();
+    }
+
+    public long getHttp1ResponseCount() {
+        return http1Responses.get();
+    }
+
+    /**
+     * @return Body bytes received from servers (compressed size)
+     */
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    /**
+     * @return Body bytes after Content-Encoding was decoded
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    public long getCompressedResponseCount() {
+        return compressedResponses.get();
+    }
+
+    public int getHostCount() {
+        return hosts.size();
+    }
+
+    /**
+     * Estimated number of connections opened across all hosts
+     *
+     * @return Connection count
+     */
+    public long getEstimatedConnections() {
+        long connections = 0;
+        for (HostStats stats : hosts.values()) {
+            connections += stats.multiplexed ? 1 : stats.peakInFlight.get();
+        }
+        return connections;
+    }
+
+    /**
+     * Share of requests that did not need a new connection
+     *
+     * @return Reuse rate from 0.0 to 1.0
+     */
+    public double getReuseRate() {
+        long total = requests.get();
+        if (total == 0) {
+            return 0.0;
+        }
+        return Math.max(0, total - getEstimatedConnections()) / (double) total;
+    }
+
+    /**
+     * Prints pool metrics
+     */
+    public void printReport() {
+        System.out.println("[HttpClientPool] Pool size: " + (poolSize == 0 ? "unlimited" : poolSize) +
+                ", idle timeout: " + idleTimeoutSeconds + " s");
+        System.out.println("[HttpClientPool] Requests: " + getRequestCount() +
+                " (HTTP/2: " + getHttp2ResponseCount() + ", HTTP/1.1: " + getHttp1ResponseCount() + ")" +
+                ", hosts: " + getHostCount());
+        System.out.println("[HttpClientPool] Connections: ~" + getEstimatedConnections() +
+                ", reuse rate: " + String.format("%.1f%%", getReuseRate() * 100));
+        System.out.println("[HttpClientPool] Bodies: " + getWireBytes() + " bytes on the wire, " +
+                getDecodedBytes() + " bytes decoded (" + getCompressedResponseCount() + " compressed responses)");
+    }
+
+    private static class HostStats {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+        private volatile boolean multiplexed;
+
+        void started() {
+            int current = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(current, Math::max);
+        }
+    }
+}
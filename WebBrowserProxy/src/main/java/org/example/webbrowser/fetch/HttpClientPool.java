@@ -0,0 +1,200 @@
+package org.example.webbrowser.fetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shared keep-alive HTTP client for all fetch paths
+ *
+ * Wraps one java.net.http.HttpClient. The client keeps idle connections per host
+ * and reuses them (and their TLS sessions) for the next request. It prefers HTTP/2,
+ * so a page's assets are multiplexed over one connection when the origin supports it.
+ * Every request asks for gzip/deflate; read bodies through decode().
+ * Latency, timeouts and 429 / 503 responses of every request adjust the
+ * per-host download limits of getLimiter().
+ *
+ * Pool settings can be changed with system properties (read once at startup):
+ * -Dwebbrowser.http.poolSize=N         max idle connections kept (0 = unlimited)
+ * -Dwebbrowser.http.idleTimeout=SECONDS how long an idle connection stays open
+ * The JDK takes them only before the first HttpClient of the process is created,
+ * launchers call configureJdkPool() first thing for that reason.
+ */
+public class HttpClientPool {
+
+    public static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final int DEFAULT_POOL_SIZE = 32;
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+
+    private static HttpClientPool sharedPool;
+    private static boolean jdkPoolConfigured;
+
+    private final HttpClient client;
+    private final HttpClientMetrics metrics;
+    private final HostConcurrencyLimiter limiter;
+
+    private HttpClientPool(int poolSize, int idleTimeoutSeconds) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+        this.metrics = new HttpClientMetrics(poolSize, idleTimeoutSeconds);
+        this.limiter = new HostConcurrencyLimiter();
+    }
+
+    /**
+     * Gets the process-wide client pool, creating it on first use
+     *
+     * @return Shared pool
+     */
+    public static synchronized HttpClientPool shared() {
+        if (sharedPool == null) {
+            configureJdkPool();
+            sharedPool = new HttpClientPool(
+                    Integer.getInteger("jdk.httpclient.connectionPoolSize", DEFAULT_POOL_SIZE),
+                    Integer.getInteger("jdk.httpclient.keepalive.timeout", DEFAULT_IDLE_TIMEOUT_SECONDS));
+        }
+        return sharedPool;
+    }
+
+    /**
+     * Passes the webbrowser.http.* pool settings to the JDK client. It reads them once,
+     * when the first HttpClient of the process is created, so call this at startup before
+     * any client exists. jdk.httpclient.* properties given on the command line win.
+     */
+    public static synchronized void configureJdkPool() {
+        if (jdkPoolConfigured) {
+            return;
+        }
+        jdkPoolConfigured = true;
+        if (System.getProperty("jdk.httpclient.connectionPoolSize") == null) {
+            System.setProperty("jdk.httpclient.connectionPoolSize",
+                    String.valueOf(Integer.getInteger("webbrowser.http.poolSize", DEFAULT_POOL_SIZE)));
+        }
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout",
+                    String.valueOf(Integer.getInteger("webbrowser.http.idleTimeout", DEFAULT_IDLE_TIMEOUT_SECONDS)));
+        }
+    }
+
+    /**
+     * Creates request builder with default browser headers and timeout.
+     * Accept-Encoding is always sent, so the response must be read with decode().
+     *
+     * @param url Request URL
+     * @return Builder that can be customized further
+     */
+    public HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", DecodedBody.ACCEPT_ENCODING);
+    }
+
+    /**
+     * Wraps a streamed response body so it is decompressed while read.
+     * Closing the returned stream records wire and decoded sizes in the metrics.
+     *
+     * @param response Response read with BodyHandlers.ofInputStream()
+     * @return Decoded body
+     * @throws IOException if the Content-Encoding is not supported
+     */
+    public DecodedBody decode(HttpResponse<InputStream> response) throws IOException {
+        return DecodedBody.open(response.body(), response.headers(), metrics);
+    }
+
+    /**
+     * Sends request over pooled connection and records metrics
+     *
+     * @param request Request to send
+     * @param bodyHandler How to read response body
+     * @return Response
+     * @throws IOException on network error or interruption
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        return send(request, bodyHandler, CancellationToken.NONE);
+    }
+
+    /**
+     * Sends request over pooled connection, aborting the exchange when the token is cancelled.
+     * The token only covers the exchange up to the response headers; whoever reads
+     * a streamed body registers closing it with the same token.
+     *
+     * @param request Request to send
+     * @param bodyHandler How to read response body
+     * @param cancellation Token of the navigation the request belongs to
+     * @return Response
+     * @throws IOException on network error, interruption or cancellation
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                    CancellationToken cancellation) throws IOException {
+        cancellation.throwIfCancelled();
+
+        String host = request.uri().getHost();
+        metrics.requestStarted(host);
+        long startTime = System.nanoTime();
+
+        CompletableFuture<HttpResponse<T>> exchange;
+        try {
+            exchange = client.sendAsync(request, bodyHandler);
+        } catch (IllegalArgumentException e) {
+            metrics.requestFinished(host);
+            throw new IOException("Invalid request: " + request.uri(), e);
+        }
+
+        CancellationToken.Registration abort = cancellation.onCancel(() -> exchange.cancel(true));
+        try {
+            HttpResponse<T> response = exchange.get();
+            metrics.responseReceived(host, response.version());
+            limiter.onResponse(host, (System.nanoTime() - startTime) / 1_000_000, response.statusCode());
+            return response;
+        } catch (CancellationException e) {
+            cancellation.throwIfCancelled();
+            throw new IOException("Request cancelled: " + request.uri(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof HttpTimeoutException) {
+                limiter.onTimeout(host);
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Request failed: " + request.uri(), cause);
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted: " + request.uri(), e);
+        } finally {
+            abort.close();
+            metrics.requestFinished(host);
+        }
+    }
+
+    public HttpClient getClient() {
+        return client;
+    }
+
+    public HttpClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Per-host download limits, adjusted by every response of this pool
+     */
+    public HostConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+}
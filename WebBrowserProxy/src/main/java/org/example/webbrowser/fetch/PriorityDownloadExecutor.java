@@ -0,0 +1,76 @@
+package org.example.webbrowser.fetch;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed thread pool whose queue is ordered by ResourcePriority
+ *
+ * A free worker always takes the most important waiting download; downloads
+ * of the same class run in the order they were submitted. Tasks submitted
+ * through the plain ExecutorService methods get priority OTHER.
+ */
+public class PriorityDownloadExecutor extends ThreadPoolExecutor {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    public PriorityDownloadExecutor(int threads, ThreadFactory threadFactory) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * Queues a task with the given priority
+     *
+     * @param priority Priority class of the download
+     * @param task Download to run
+     * @return Future completed when the task has run
+     */
+    public Future<?> submit(ResourcePriority priority, Runnable task) {
+        PriorityTask<Object> future = new PriorityTask<>(Executors.callable(task), priority, sequence.getAndIncrement());
+        execute(future);
+        return future;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new PriorityTask<>(Executors.callable(runnable, value), ResourcePriority.OTHER, sequence.getAndIncrement());
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new PriorityTask<>(callable, ResourcePriority.OTHER, sequence.getAndIncrement());
+    }
+
+    /**
+     * The priority queue only accepts comparable tasks, plain runnables are wrapped
+     */
+    @Override
+    public void execute(Runnable command) {
+        super.execute(command instanceof PriorityTask ? command : newTaskFor(command, null));
+    }
+
+    private static class PriorityTask<T> extends FutureTask<T> implements Comparable<PriorityTask<?>> {
+        private final ResourcePriority priority;
+        private final long sequence;
+
+        PriorityTask(Callable<T> callable, ResourcePriority priority, long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PriorityTask<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.webbrowser.fetch;
+
+/**
+ * Download priority classes, most important first
+ *
+ * Stylesheets and parser-blocking scripts must be on disk before the page can be shown,
+ * everything else may arrive while it is already on screen.
+ */
+public enum ResourcePriority {
+    /** Stylesheets (link rel=stylesheet and @import), they block rendering wherever they are */
+    RENDER_BLOCKING_CSS,
+    /** Scripts without async or defer, they block the parser */
+    SYNC_SCRIPT,
+    /** First images of the document, likely visible without scrolling */
+    ABOVE_THE_FOLD_IMAGE,
+    /** Web fonts from @font-face */
+    FONT,
+    /** Everything else: other images, icons, async scripts, CSS backgrounds */
+    OTHER;
+
+    /**
+     * @return true if the page cannot be shown before this resource is saved
+     */
+    public boolean isRenderBlocking() {
+        return this == RENDER_BLOCKING_CSS || this == SYNC_SCRIPT;
+    }
+
+    /**
+     * @return The more important of two priorities
+     */
+    public ResourcePriority max(ResourcePriority other) {
+        return other != null && other.ordinal() < ordinal() ? other : this;
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.webbrowser.fetch;
+
+/**
+ * Resource URL found in a document together with its position
+ *
+ * start and end are offsets of the URL value inside the scanned text,
+ * so the rewriter can splice a local path in without searching again.
+ */
+public class ResourceReference {
+    private final String url;
+    private final int start;
+    private final int end;
+    private final String folder;
+    private final String type;
+    private final ResourcePriority priority;
+
+    public ResourceReference(String url, int start, int end, String folder, String type, ResourcePriority priority) {
+        this.url = url;
+        this.start = start;
+        this.end = end;
+        this.folder = folder;
+        this.type = type;
+        this.priority = priority;
+    }
+
+    /**
+     * @return URL exactly as written in the document
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return Cache folder for the resource (css, js, images, fonts)
+     */
+    public String getFolder() {
+        return folder;
+    }
+
+    /**
+     * @return Where the reference was found (link, import, script, img, srcset, source, preload, bg, icon, font)
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return How soon the resource is needed to show the page
+     */
+    public ResourcePriority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String toString() {
+        return type + " (" + priority + "): " + url + " [" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.webbrowser.fetch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs at most one call per key at a time, callers that come while it runs share its result
+ *
+ * Used to coalesce downloads: two pages, a page and a background refresh, or several
+ * proxy clients asking for the same URL wait for one request instead of sending their own.
+ * Results are not kept after the call finished, caching is left to the caller.
+ *
+ * The call runs on the thread of the first caller, with that caller's cancellation.
+ * If it is aborted because that caller's navigation was cancelled, the others do not
+ * fail with it: one of them runs the call again.
+ *
+ * @param <T> Result type
+ */
+public class SingleFlight<T> {
+
+    /**
+     * Work to share between callers
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T run() throws IOException;
+    }
+
+    private final Map<String, CompletableFuture<T>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * Runs the call, or waits for the call already running under the same key
+     *
+     * @param key Identity of the work, e.g. normalized URL
+     * @param call Work to run if nobody runs it yet
+     * @param cancellation Token of the caller; cancelling it stops waiting, not a call someone else started
+     * @return Result of the call
+     * @throws IOException if the call failed or the caller was cancelled
+     */
+    public T execute(String key, Call<T> call, CancellationToken cancellation) throws IOException {
+        while (true) {
+            cancellation.throwIfCancelled();
+
+            CompletableFuture<T> flight = new CompletableFuture<>();
+            CompletableFuture<T> running = flights.putIfAbsent(key, flight);
+            if (running == null) {
+                return run(key, call, flight);
+            }
+
+            shared.incrementAndGet();
+            try {
+                return await(running, cancellation);
+            } catch (InterruptedIOException e) {
+                if (cancellation.isCancelled() || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                // The caller that ran it was cancelled, this one was not: run it again
+            }
+        }
+    }
+
+    private T run(String key, Call<T> call, CompletableFuture<T> flight) throws IOException {
+        started.incrementAndGet();
+        try {
+            T result = call.run();
+            flight.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private T await(CompletableFuture<T> running, CancellationToken cancellation) throws IOException {
+        // Cancelling the copy only stops this caller from waiting
+        CompletableFuture<T> view = running.thenApply(result -> result);
+        CancellationToken.Registration abort = cancellation.onCancel(() -> view.cancel(false));
+        try {
+            return view.get();
+        } catch (CancellationException e) {
+            cancellation.throwIfCancelled();
+            throw new InterruptedIOException("Shared call cancelled");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a shared call");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Shared call failed", cause);
+        } finally {
+            abort.close();
+        }
+    }
+
+    /**
+     * @param key Identity of the work
+     * @return true if a call with this key is running
+     */
+    public boolean isRunning(String key) {
+        return flights.containsKey(key);
+    }
+
+    /**
+     * @return Calls that were actually run
+     */
+    public long getStartedCount() {
+        return started.get();
+    }
+
+    /**
+     * @return Callers that got the result of a call someone else ran
+     */
+    public long getSharedCount() {
+        return shared.get();
+    }
+}
@@ -1,6 +1,6 @@
 package org.example.webbrowser.visitor;
 
-import org.example.webbrowser.factory_template.Resource;
+import org.example.webbrowser.factory_template.AbstractResource;
 import org.example.webbrowser.proxy.IImage;
 import org.example.webbrowser.proxy.ImageProxy;
 
@@ -9,7 +9,7 @@ import org.example.webbrowser.proxy.ImageProxy;
  *
  * This adapter allows ImageProxy to work with the new Resource interface
  */
-public class ImageResourceAdapter implements Resource {
+public class ImageResourceAdapter extends AbstractResource {
 
     private IImage imageProxy;
 
@@ -33,7 +33,7 @@ public class ImageResourceAdapter implements Resource {
     }
 
     @Override
-    public void load() {
+    protected void loadContent() {
         imageProxy.loadImage();
     }
 
@@ -3,11 +3,17 @@ package org.example.webbrowser.visitor;
 import org.example.webbrowser.CSSFile;
 import org.example.webbrowser.HTMLFile;
 import org.example.webbrowser.JSFile;
+import org.example.webbrowser.cache.CacheEntry;
+import org.example.webbrowser.cache.CacheIndex;
 import org.example.webbrowser.proxy.ImageProxy;
 
+import java.nio.file.Path;
+
 /**
  * Calculates total size of all resources on a web page.
  * Visits each resource and accumulates size information.
+ * When the page came from the browser cache, the size each resource took
+ * on the wire (after gzip/deflate) is reported next to its content size.
  */
 public class ResourceSizeCalculatorVisitor implements ResourceVisitor {
     
@@ -16,44 +22,64 @@ public class ResourceSizeCalculatorVisitor implements ResourceVisitor {
     private long cssSize;
     private long jsSize;
     private long imageSize;
+    private long wireSize;
     
     private int htmlCount;
     private int cssCount;
     private int jsCount;
     private int imageCount;
     
+    private CacheIndex cacheIndex;
+    private Path pageFile;
+    
     public ResourceSizeCalculatorVisitor() {
         this.totalSize = 0;
         this.htmlSize = 0;
         this.cssSize = 0;
         this.jsSize = 0;
         this.imageSize = 0;
+        this.wireSize = 0;
         this.htmlCount = 0;
         this.cssCount = 0;
         this.jsCount = 0;
         this.imageCount = 0;
     }
     
+    /**
+     * Sets where transfer sizes are looked up
+     * 
+     * @param cacheIndex Cache index of the browser cache
+     * @param pageFile Cached HTML file that resource paths are relative to, null if page is not cached
+     */
+    public void setCache(CacheIndex cacheIndex, Path pageFile) {
+        this.cacheIndex = cacheIndex;
+        this.pageFile = pageFile;
+    }
+    
     @Override
     public void visit(HTMLFile htmlFile) {
         long size = calculateSize(htmlFile.getContent());
+        long transferred = getWireSize(pageFile, size);
         htmlSize += size;
         totalSize += size;
+        wireSize += transferred;
         htmlCount++;
         
         System.out.println("[ResourceSizeCalculator] HTML: " + htmlFile.getFileName() + 
-                         " - " + formatSize(size));
+                         " - " + formatSize(size) + formatTransferred(size, transferred));
     }
     
     @Override
     public void visit(CSSFile cssFile) {
         long size = calculateSize(cssFile.getContent());
+        long transferred = getWireSize(cssFile.getFilePath(), size);
         cssSize += size;
         totalSize += size;
+        wireSize += transferred;
         cssCount++;
         
         System.out.println("[ResourceSizeCalculator] CSS: " + cssFile.getFileName() + 
-                         " - " + formatSize(size));
+                         " - " + formatSize(size) + formatTransferred(size, transferred));
     }
     
     @Override
@@ -61,6 +87,7 @@ public class ResourceSizeCalculatorVisitor implements ResourceVisitor {
         long size = calculateSize(jsFile.getContent());
         jsSize += size;
         totalSize += size;
+        wireSize += getWireSize(jsFile.getFilePath(), size);
         jsCount++;
     }
     
@@ -78,9 +105,40 @@ public class ResourceSizeCalculatorVisitor implements ResourceVisitor {
         
         imageSize += size;
         totalSize += size;
+        wireSize += getWireSize(imageProxy.getFilePath(), size);
         imageCount++;
     }
     
+    /**
+     * Bytes the resource took on the wire, as recorded by the fetcher
+     * 
+     * @param filePath Resource path as written in the cached page
+     * @param contentSize Size to use when transfer size is unknown
+     * @return Transferred size in bytes
+     */
+    private long getWireSize(String filePath, long contentSize) {
+        if (pageFile == null || filePath == null || filePath.contains("://")) {
+            return contentSize;
+        }
+        try {
+            return getWireSize(pageFile.resolveSibling(filePath).normalize(), contentSize);
+        } catch (RuntimeException e) {
+            return contentSize;
+        }
+    }
+    
+    private long getWireSize(Path file, long contentSize) {
+        if (cacheIndex == null || file == null) {
+            return contentSize;
+        }
+        CacheEntry entry = cacheIndex.findByFile(file);
+        return entry != null && entry.getWireSize() > 0 ? entry.getWireSize() : contentSize;
+    }
+    
+    private String formatTransferred(long size, long transferred) {
+        return transferred == size ? "" : " (" + formatSize(transferred) + " transferred)";
+    }
+    
     /**
      * Calculates size of content in bytes
      * 
@@ -120,6 +178,15 @@ public class ResourceSizeCalculatorVisitor implements ResourceVisitor {
         return totalSize;
     }
     
+    /**
+     * Gets total size of all resources as transferred over the network
+     * 
+     * @return Wire size in bytes (content size for resources with unknown transfer size)
+     */
+    public long getWireSize() {
+        return wireSize;
+    }
+    
     /**
      * Gets total size of HTML resources
      * 
@@ -184,6 +251,10 @@ public class ResourceSizeCalculatorVisitor implements ResourceVisitor {
         if (imageCount > 0) {
             System.out.println("Images:       " + imageCount + " files - " + formatSize(imageSize));
         }
+        
+        if (wireSize != totalSize) {
+            System.out.println("Transferred:  " + formatSize(wireSize) + " (content: " + formatSize(totalSize) + ")");
+        }
     }
     
     /**
@@ -195,6 +266,7 @@ public class ResourceSizeCalculatorVisitor implements ResourceVisitor {
         cssSize = 0;
         jsSize = 0;
         imageSize = 0;
+        wireSize = 0;
         htmlCount = 0;
         cssCount = 0;
         jsCount = 0;
@@ -0,0 +1,39 @@
+package org.example.webbrowser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HTTPResponseTest {
+
+    @Test
+    void nullBodyReadsAsEmpty() {
+        HTTPResponse response = new HTTPResponse();
+        response.setStatusCode(504);
+        response.setBody(null);
+
+        assertEquals("", response.getBody());
+        assertEquals(0, response.getBodyLength());
+        assertEquals(0, response.getBodyBuffer().remaining());
+    }
+
+    @Test
+    void nullBodyReplacesByteBody() {
+        HTTPResponse response = new HTTPResponse();
+        response.setBody("<html></html>".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        response.setBody(null);
+
+        assertEquals("", response.getBody());
+    }
+
+    @Test
+    void byteBodyIsDecodedWithItsCharset() {
+        HTTPResponse response = new HTTPResponse();
+        response.setBody("café".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+
+        assertEquals("café", response.getBody());
+        assertEquals(4, response.getBodyLength());
+    }
+}
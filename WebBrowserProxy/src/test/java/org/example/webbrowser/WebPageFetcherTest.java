@@ -0,0 +1,88 @@
+package org.example.webbrowser;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebPageFetcherTest {
+
+    private static final String PAGE = "<html><head></head><body><img src=\"/logo.png\"></body></html>";
+
+    private Path cacheRoot;
+    private HttpServer origin;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void startOrigin() throws IOException {
+        cacheRoot = Files.createTempDirectory("fetcher-test");
+        origin = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        origin.createContext("/", exchange -> respond(exchange, "text/html", "no-cache", PAGE));
+        // Stale right away, but may be used while it is revalidated in background
+        origin.createContext("/logo.png", exchange -> respond(exchange, "image/png",
+                "max-age=0, stale-while-revalidate=600", "PNG"));
+        origin.start();
+    }
+
+    @AfterEach
+    void stopOrigin() throws IOException {
+        origin.stop(0);
+        // Background refresh and janitor threads may still write here, leftovers are not an error
+        try (Stream<Path> files = Files.walk(cacheRoot)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void staleWhileRevalidateResourceIsRequestedAgain() throws Exception {
+        String url = "http://127.0.0.1:" + origin.getAddress().getPort() + "/";
+        String outputDir = cacheRoot.resolve("127_0_0_1").toString();
+
+        new WebPageFetcher(url, outputDir).fetchAndSave();
+        assertEquals(1, requestCount("/logo.png"));
+
+        new WebPageFetcher(url, outputDir).fetchAndSave();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (requestCount("/logo.png") < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, requestCount("/logo.png"), "stale image was not revalidated");
+        assertTrue(requestCount("/") >= 2);
+    }
+
+    private int requestCount(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    private void respond(HttpExchange exchange, String contentType, String cacheControl, String body) throws IOException {
+        requests.computeIfAbsent(exchange.getRequestURI().getPath(), path -> new AtomicInteger()).incrementAndGet();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        exchange.close();
+    }
+}
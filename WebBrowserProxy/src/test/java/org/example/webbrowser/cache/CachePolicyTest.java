@@ -0,0 +1,166 @@
+package org.example.webbrowser.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachePolicyTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long YEAR_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+    @Test
+    void maxAgeSetsExpiry() {
+        CacheEntry entry = apply("Cache-Control", "public, max-age=60");
+
+        assertEquals(NOW + 60_000, entry.getExpiresAt());
+        assertEquals(CachePolicy.Freshness.FRESH, CachePolicy.getFreshness(entry, NOW + 59_999));
+        assertEquals(CachePolicy.Freshness.STALE, CachePolicy.getFreshness(entry, NOW + 60_000));
+    }
+
+    @Test
+    void maxAgeTakesPrecedenceOverExpires() {
+        CacheEntry entry = apply("Cache-Control", "max-age=10", "Expires", httpDate(NOW + 3_600_000));
+
+        assertEquals(NOW + 10_000, entry.getExpiresAt());
+    }
+
+    @Test
+    void expiresIsUsedWithoutMaxAge() {
+        CacheEntry entry = apply("Expires", httpDate(NOW + 3_600_000));
+
+        assertEquals(NOW + 3_600_000, entry.getExpiresAt());
+        assertEquals(CachePolicy.Freshness.FRESH, CachePolicy.getFreshness(entry, NOW));
+    }
+
+    @Test
+    void invalidExpiresMeansAlreadyExpired() {
+        CacheEntry entry = apply("Expires", "0");
+
+        assertEquals(0, entry.getExpiresAt());
+        assertEquals(CachePolicy.Freshness.STALE, CachePolicy.getFreshness(entry, NOW));
+    }
+
+    @Test
+    void ageIsSubtractedFromMaxAge() {
+        CacheEntry entry = apply("Cache-Control", "max-age=100", "Age", "40");
+
+        assertEquals(NOW + 60_000, entry.getExpiresAt());
+    }
+
+    @Test
+    void ageAboveMaxAgeIsStaleRightAway() {
+        CacheEntry entry = apply("Cache-Control", "max-age=100", "Age", "150");
+
+        assertEquals(CachePolicy.Freshness.STALE, CachePolicy.getFreshness(entry, NOW));
+    }
+
+    @Test
+    void immutableWithoutMaxAgeIsFreshForAYear() {
+        CacheEntry entry = apply("Cache-Control", "immutable");
+
+        assertEquals(NOW + YEAR_MILLIS, entry.getExpiresAt());
+    }
+
+    @Test
+    void maxAgeTakesPrecedenceOverImmutable() {
+        CacheEntry entry = apply("Cache-Control", "max-age=30, immutable");
+
+        assertEquals(NOW + 30_000, entry.getExpiresAt());
+    }
+
+    @Test
+    void staleWhileRevalidateWindowFollowsExpiry() {
+        CacheEntry entry = apply("Cache-Control", "max-age=60, stale-while-revalidate=30");
+
+        assertEquals(30, entry.getStaleWhileRevalidate());
+        assertEquals(CachePolicy.Freshness.FRESH, CachePolicy.getFreshness(entry, NOW + 59_000));
+        assertEquals(CachePolicy.Freshness.STALE_WHILE_REVALIDATE, CachePolicy.getFreshness(entry, NOW + 60_000));
+        assertEquals(CachePolicy.Freshness.STALE_WHILE_REVALIDATE, CachePolicy.getFreshness(entry, NOW + 89_999));
+        assertEquals(CachePolicy.Freshness.STALE, CachePolicy.getFreshness(entry, NOW + 90_000));
+    }
+
+    @Test
+    void staleWhileRevalidateNeedsAnExpiry() {
+        CacheEntry entry = apply("Cache-Control", "stale-while-revalidate=30");
+
+        assertEquals(CachePolicy.Freshness.STALE, CachePolicy.getFreshness(entry, NOW));
+    }
+
+    @Test
+    void noCacheIsAlwaysRevalidated() {
+        CacheEntry entry = apply("Cache-Control", "no-cache, max-age=3600");
+
+        assertTrue(entry.isNoCache());
+        assertEquals(CachePolicy.Freshness.STALE, CachePolicy.getFreshness(entry, NOW));
+    }
+
+    @Test
+    void noStoreIsNeverServedFromCache() {
+        HttpHeaders headers = headers("Cache-Control", "max-age=3600", "Cache-Control", "No-Store");
+        CacheEntry entry = new CacheEntry("https://example.com/", "page.html");
+        CachePolicy.apply(entry, headers, NOW);
+
+        assertTrue(entry.isNoStore());
+        assertTrue(CachePolicy.isNoStore(headers));
+        assertEquals(CachePolicy.Freshness.STALE, CachePolicy.getFreshness(entry, NOW));
+    }
+
+    @Test
+    void otherDirectivesAreNotNoStore() {
+        assertFalse(CachePolicy.isNoStore(headers("Cache-Control", "no-cache, private")));
+        assertFalse(CachePolicy.isNoStore(headers()));
+    }
+
+    @Test
+    void responseWithoutFreshnessHeadersIsStale() {
+        CacheEntry entry = apply();
+
+        assertEquals(0, entry.getExpiresAt());
+        assertEquals(CachePolicy.Freshness.STALE, CachePolicy.getFreshness(entry, NOW));
+    }
+
+    @Test
+    void quotedAndMalformedArgumentsAreTolerated() {
+        assertEquals(NOW + 20_000, apply("Cache-Control", "max-age=\"20\"").getExpiresAt());
+        assertEquals(0, apply("Cache-Control", "max-age=soon").getExpiresAt());
+    }
+
+    @Test
+    void notModifiedAnswerExtendsLifetime() {
+        CacheEntry entry = apply("Cache-Control", "max-age=60");
+
+        CachePolicy.apply(entry, headers("Cache-Control", "max-age=60"), NOW + 120_000);
+
+        assertEquals(CachePolicy.Freshness.FRESH, CachePolicy.getFreshness(entry, NOW + 150_000));
+    }
+
+    private static CacheEntry apply(String... nameValuePairs) {
+        CacheEntry entry = new CacheEntry("https://example.com/app.js", "blobs/ab/abcdef.js");
+        CachePolicy.apply(entry, headers(nameValuePairs), NOW);
+        return entry;
+    }
+
+    private static HttpHeaders headers(String... nameValuePairs) {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        for (int i = 0; i < nameValuePairs.length; i += 2) {
+            map.computeIfAbsent(nameValuePairs[i], name -> new ArrayList<>()).add(nameValuePairs[i + 1]);
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+}
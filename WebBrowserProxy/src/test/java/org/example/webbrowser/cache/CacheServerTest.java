@@ -0,0 +1,59 @@
+package org.example.webbrowser.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CacheServerTest {
+
+    private static final long SIZE = 1000;
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    @Test
+    void singleRange() {
+        assertArrayEquals(new long[]{0, 99}, CacheServer.parseRange("bytes=0-99", SIZE));
+        assertArrayEquals(new long[]{500, 500}, CacheServer.parseRange("bytes=500-500", SIZE));
+    }
+
+    @Test
+    void openEndedRangeRunsToEndOfFile() {
+        assertArrayEquals(new long[]{100, 999}, CacheServer.parseRange("bytes=100-", SIZE));
+    }
+
+    @Test
+    void lastByteIsClampedToFile() {
+        assertArrayEquals(new long[]{900, 999}, CacheServer.parseRange("bytes=900-5000", SIZE));
+    }
+
+    @Test
+    void suffixRangeIsLastBytes() {
+        assertArrayEquals(new long[]{900, 999}, CacheServer.parseRange("bytes=-100", SIZE));
+    }
+
+    @Test
+    void suffixLongerThanFileIsWholeFile() {
+        assertArrayEquals(new long[]{0, 999}, CacheServer.parseRange("bytes=-5000", SIZE));
+    }
+
+    @Test
+    void rangeStartingPastEndIsUnsatisfiable() {
+        assertArrayEquals(UNSATISFIABLE, CacheServer.parseRange("bytes=1000-", SIZE));
+        assertArrayEquals(UNSATISFIABLE, CacheServer.parseRange("bytes=2000-3000", SIZE));
+    }
+
+    @Test
+    void emptySuffixIsUnsatisfiable() {
+        assertArrayEquals(UNSATISFIABLE, CacheServer.parseRange("bytes=-0", SIZE));
+        assertArrayEquals(UNSATISFIABLE, CacheServer.parseRange("bytes=-10", 0));
+    }
+
+    @Test
+    void malformedOrMultipleRangesAreIgnored() {
+        assertNull(CacheServer.parseRange("bytes=0-1,5-6", SIZE));
+        assertNull(CacheServer.parseRange("bytes=20-10", SIZE));
+        assertNull(CacheServer.parseRange("bytes=abc", SIZE));
+        assertNull(CacheServer.parseRange("bytes=a-b", SIZE));
+        assertNull(CacheServer.parseRange("items=0-1", SIZE));
+    }
+}
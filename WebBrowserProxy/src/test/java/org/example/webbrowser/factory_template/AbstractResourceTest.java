@@ -0,0 +1,134 @@
+package org.example.webbrowser.factory_template;
+
+import org.example.webbrowser.JSFile;
+import org.example.webbrowser.visitor.ResourceVisitor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AbstractResourceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void emptyFileIsLoaded() throws Exception {
+        Path file = Files.createFile(directory.resolve("empty.js"));
+        JSFileAdapter resource = new JSFileAdapter(new JSFile("empty.js", file.toString()));
+
+        CompletableFuture<Resource> load = resource.loadAsync(Runnable::run).toCompletableFuture();
+
+        assertSame(resource, load.get(5, TimeUnit.SECONDS));
+        assertEquals(Resource.LoadState.LOADED, resource.getLoadState());
+    }
+
+    @Test
+    void missingFileFails() {
+        JSFileAdapter resource = new JSFileAdapter(new JSFile("gone.js", directory.resolve("gone.js").toString()));
+
+        CompletableFuture<Resource> load = resource.loadAsync(Runnable::run).toCompletableFuture();
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> load.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, error.getCause());
+        assertEquals(Resource.LoadState.FAILED, resource.getLoadState());
+    }
+
+    @Test
+    void cancelledReadFinishingLateDoesNotChangeNewerLoad() throws Exception {
+        BlockingResource resource = new BlockingResource();
+        List<Runnable> queued = new ArrayList<>();
+
+        // First load blocks inside loadContent() on its own thread
+        CompletableFuture<Resource> first = resource.loadAsync(task -> {
+            Thread thread = new Thread(task);
+            thread.start();
+        }).toCompletableFuture();
+        assertTrue(resource.readStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(resource.cancel());
+        assertTrue(first.isCompletedExceptionally());
+
+        // Restarted load is queued, not running yet
+        CompletableFuture<Resource> second = resource.loadAsync(queued::add).toCompletableFuture();
+        assertEquals(Resource.LoadState.LOADING, resource.getLoadState());
+
+        resource.releaseRead.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (resource.reads < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, resource.reads);
+        assertEquals(Resource.LoadState.LOADING, resource.getLoadState());
+
+        queued.forEach(Runnable::run);
+        assertSame(resource, second.get(5, TimeUnit.SECONDS));
+        assertEquals(Resource.LoadState.LOADED, resource.getLoadState());
+    }
+
+    /**
+     * Resource whose first read waits until the test releases it
+     */
+    private static class BlockingResource extends AbstractResource {
+        private final CountDownLatch readStarted = new CountDownLatch(1);
+        private final CountDownLatch releaseRead = new CountDownLatch(1);
+        private volatile int reads;
+        private volatile String content;
+
+        @Override
+        protected void loadContent() {
+            if (reads == 0) {
+                readStarted.countDown();
+                try {
+                    releaseRead.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            content = "body";
+            reads++;
+        }
+
+        @Override
+        public String getFileName() {
+            return "blocking.js";
+        }
+
+        @Override
+        public String getFilePath() {
+            return "blocking.js";
+        }
+
+        @Override
+        public String getResourceType() {
+            return "JAVASCRIPT";
+        }
+
+        @Override
+        public String getContent() {
+            return content;
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return content != null;
+        }
+
+        @Override
+        public void accept(ResourceVisitor visitor) {
+        }
+    }
+}
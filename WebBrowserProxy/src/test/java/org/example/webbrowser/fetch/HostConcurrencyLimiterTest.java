@@ -0,0 +1,137 @@
+package org.example.webbrowser.fetch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HostConcurrencyLimiterTest {
+
+    private static final String HOST = "example.com";
+
+    @Test
+    void limitGrowsByOneAfterFullWindowOfFastResponses() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(6, 2);
+        List<String> started = new ArrayList<>();
+
+        limiter.whenFree(HOST, ResourcePriority.OTHER, () -> started.add("a"));
+        limiter.whenFree(HOST, ResourcePriority.OTHER, () -> started.add("b"));
+        limiter.whenFree(HOST, ResourcePriority.OTHER, () -> started.add("c"));
+        assertEquals(List.of("a", "b"), started);
+
+        limiter.onResponse(HOST, 100, 200);
+        assertEquals(2, limiter.getLimit(HOST));
+        limiter.onResponse(HOST, 110, 200);
+
+        assertEquals(3, limiter.getLimit(HOST));
+        // The extra slot starts the queued download
+        assertEquals(List.of("a", "b", "c"), started);
+    }
+
+    @Test
+    void unusedLimitDoesNotGrow() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(6, 2);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.whenFree(HOST, ResourcePriority.OTHER, () -> { });
+            limiter.onResponse(HOST, 100, 200);
+            limiter.release(HOST);
+        }
+
+        assertEquals(2, limiter.getLimit(HOST));
+    }
+
+    @Test
+    void limitStopsAtHardCap() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(3, 2);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.whenFree(HOST, ResourcePriority.OTHER, () -> { });
+        }
+        for (int i = 0; i < 20; i++) {
+            limiter.onResponse(HOST, 100, 200);
+        }
+
+        assertEquals(3, limiter.getLimit(HOST));
+    }
+
+    @Test
+    void overloadStatusHalvesLimit() {
+        HostConcurrencyLimiter limiter = grownTo(4);
+
+        limiter.onResponse(HOST, 100, 503);
+
+        assertEquals(2, limiter.getLimit(HOST));
+    }
+
+    @Test
+    void slowResponseHalvesLimit() {
+        HostConcurrencyLimiter limiter = grownTo(4);
+
+        // Baseline is about 100 ms, 300 ms is more than twice that
+        limiter.onResponse(HOST, 300, 200);
+
+        assertEquals(2, limiter.getLimit(HOST));
+    }
+
+    @Test
+    void smallJitterOnFastHostIsNotOverload() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(6, 2);
+        limiter.onResponse(HOST, 5, 200);
+
+        limiter.onResponse(HOST, 40, 200);
+
+        assertEquals(2, limiter.getLimit(HOST));
+    }
+
+    @Test
+    void decreasesWithinCooldownCountOnce() {
+        HostConcurrencyLimiter limiter = grownTo(6);
+
+        limiter.onResponse(HOST, 100, 429);
+        limiter.onResponse(HOST, 100, 429);
+        limiter.onTimeout(HOST);
+
+        assertEquals(3, limiter.getLimit(HOST));
+    }
+
+    @Test
+    void limitNeverDropsBelowOne() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(6, 1);
+
+        limiter.onTimeout(HOST);
+
+        assertEquals(1, limiter.getLimit(HOST));
+    }
+
+    @Test
+    void releasedSlotStartsHighestPriorityFirst() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(6, 1);
+        List<String> started = new ArrayList<>();
+
+        limiter.whenFree(HOST, ResourcePriority.OTHER, () -> started.add("running"));
+        limiter.whenFree(HOST, ResourcePriority.OTHER, () -> started.add("image"));
+        limiter.whenFree(HOST, ResourcePriority.RENDER_BLOCKING_CSS, () -> started.add("css"));
+
+        limiter.release(HOST);
+        assertEquals(List.of("running", "css"), started);
+        limiter.release(HOST);
+        assertEquals(List.of("running", "css", "image"), started);
+    }
+
+    /**
+     * Limiter of a host whose limit grew to the given value with about 100 ms latency
+     */
+    private static HostConcurrencyLimiter grownTo(int target) {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(target, 2);
+        for (int i = 0; i < target; i++) {
+            limiter.whenFree(HOST, ResourcePriority.OTHER, () -> { });
+        }
+        while (limiter.getLimit(HOST) < target) {
+            limiter.onResponse(HOST, 100, 200);
+        }
+        return limiter;
+    }
+}
@@ -0,0 +1,236 @@
+package org.example.webbrowser.fetch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HtmlResourceScannerTest {
+
+    private final HtmlResourceScanner scanner = new HtmlResourceScanner();
+
+    @Test
+    void findsResourcesInDocumentOrder() {
+        String html = "<html><head>" +
+                "<link rel=\"stylesheet\" href=\"/main.css\">" +
+                "<script src=\"/app.js\"></script>" +
+                "</head><body><img src=\"logo.png\"></body></html>";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("/main.css", "/app.js", "logo.png"), urls(references));
+        assertEquals(List.of("link", "script", "img"), types(references));
+        assertOffsets(html, references);
+    }
+
+    @Test
+    void elementDecidesTypeWithoutExtension() {
+        String html = "<link rel=stylesheet href=/style?v=2><img src=\"/avatar/12\">";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("/style?v=2", "/avatar/12"), urls(references));
+        assertEquals("css", references.get(0).getFolder());
+        assertEquals("images", references.get(1).getFolder());
+    }
+
+    @Test
+    void scriptPriorityDependsOnLoadingMode() {
+        String html = "<script src=\"sync.js\"></script>" +
+                "<script async src=\"async.js\"></script>" +
+                "<script defer src=\"defer.js\"></script>" +
+                "<script type=\"module\" src=\"module.js\"></script>";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of(ResourcePriority.SYNC_SCRIPT, ResourcePriority.OTHER, ResourcePriority.OTHER,
+                ResourcePriority.OTHER), priorities(references));
+    }
+
+    @Test
+    void onlyFirstEagerImagesAreAboveTheFold() {
+        String html = "<img src=1.png><img loading=lazy src=lazy.png><img src=2.png><img src=3.png>" +
+                "<img src=4.png><img src=5.png>";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of(ResourcePriority.ABOVE_THE_FOLD_IMAGE, ResourcePriority.OTHER,
+                ResourcePriority.ABOVE_THE_FOLD_IMAGE, ResourcePriority.ABOVE_THE_FOLD_IMAGE,
+                ResourcePriority.ABOVE_THE_FOLD_IMAGE, ResourcePriority.OTHER), priorities(references));
+    }
+
+    @Test
+    void srcsetCandidatesAreFoundWithoutDescriptors() {
+        String html = "<img srcset=\"small.png 480w, large.png 1080w, data:image/png;base64,AA,BB 2x\" src=\"fallback.png\">";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("small.png", "large.png", "data:image/png;base64,AA,BB", "fallback.png"), urls(references));
+        assertOffsets(html, references);
+    }
+
+    @Test
+    void pictureSourcesAreImagesButMediaSourcesAreSkipped() {
+        String html = "<picture><source srcset=\"hero.webp\" type=\"image/webp\"><img src=\"hero.jpg\"></picture>" +
+                "<video><source src=\"clip.mp4\"></video>";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("hero.webp", "hero.jpg"), urls(references));
+    }
+
+    @Test
+    void preloadsAreTypedByDestination() {
+        String html = "<link rel=preload as=style href=a.css>" +
+                "<link rel=preload as=font href=b.woff2 crossorigin>" +
+                "<link rel=preload as=image href=c.png imagesrcset=\"c2.png 2x\">" +
+                "<link rel=modulepreload href=d.js>" +
+                "<link rel=preload as=fetch href=/api/data>";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("a.css", "b.woff2", "c.png", "c2.png", "d.js"), urls(references));
+        assertEquals(List.of("css", "fonts", "images", "images", "js"), folders(references));
+    }
+
+    @Test
+    void relIsMatchedByWholeTokens() {
+        String html = "<link rel=\"alternate stylesheet\" href=\"/dark\">" +
+                "<link rel=\"shortcut icon\" href=\"/favicon.ico\">" +
+                "<link rel=\"stylesheets\" href=\"/not-a-style\">";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("/favicon.ico"), urls(references));
+        assertEquals("icon", references.get(0).getType());
+    }
+
+    @Test
+    void styleAttributesAndBlocksAreScanned() {
+        String html = "<div style=\"background: url( 'bg.jpg' )\"></div>" +
+                "<style>@import \"theme.css\"; @font-face { src: url(font.woff2) }</style>";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("bg.jpg", "theme.css", "font.woff2"), urls(references));
+        assertEquals(List.of("bg", "import", "font"), types(references));
+        assertOffsets(html, references);
+    }
+
+    @Test
+    void scriptBodiesAndCommentsAreSkipped() {
+        String html = "<!-- <img src=\"commented.png\"> -->" +
+                "<script>document.write('<img src=\"written.png\">');</script>" +
+                "<img src=\"real.png\">";
+
+        assertEquals(List.of("real.png"), urls(scanner.scan(html)));
+    }
+
+    @Test
+    void unquotedValueEndingWithSlashDoesNotCloseTag() {
+        String html = "<script src=/app/>var t = '<img src=ghost.png>';</script><img src=real.png>";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("/app/", "real.png"), urls(references));
+        assertOffsets(html, references);
+    }
+
+    @Test
+    void selfClosingScriptStillHasScriptBody() {
+        String html = "<script src=a.js/>var s = \"<img src=x>\";</script><img src=\"real.png\">";
+
+        List<ResourceReference> references = scanner.scan(html);
+
+        assertEquals(List.of("a.js/", "real.png"), urls(references));
+        String rewritten = HtmlResourceScanner.rewrite(html, references, reference -> "/cache/" + reference.getUrl());
+        assertTrue(rewritten.contains("var s = \"<img src=x>\";"), "inline script was rewritten");
+    }
+
+    @Test
+    void selfClosingStyleStillHasStyleBody() {
+        String html = "<style/>.a { background: url(bg.png) } /* <img src=\"no.png\"> */</style><img src=\"yes.png\">";
+
+        assertEquals(List.of("bg.png", "yes.png"), urls(scanner.scan(html)));
+    }
+
+    @Test
+    void slashBeforeClosingBracketClosesTag() {
+        String html = "<img src=\"a.png\"/><img src=b.png /><br/><img src=c.png>";
+
+        assertEquals(List.of("a.png", "b.png", "c.png"), urls(scanner.scan(html)));
+    }
+
+    @Test
+    void rewriteReplacesValuesAtTheirOffsets() {
+        String html = "<link rel=stylesheet href=\"/main.css\"><img src=logo.png alt=\"logo.png\">";
+        List<ResourceReference> references = scanner.scan(html);
+
+        String rewritten = HtmlResourceScanner.rewrite(html, references, reference -> "/local" + reference.getUrl());
+
+        assertEquals("<link rel=stylesheet href=\"/local/main.css\"><img src=/locallogo.png alt=\"logo.png\">", rewritten);
+    }
+
+    @Test
+    void rewriteKeepsReferencesWithoutReplacement() {
+        String html = "<img src=\"keep.png\"><img src=\"swap.png\">";
+        List<ResourceReference> references = scanner.scan(html);
+
+        String rewritten = HtmlResourceScanner.rewrite(html, references,
+                reference -> reference.getUrl().equals("swap.png") ? "/cache/swap.png" : null);
+
+        assertEquals("<img src=\"keep.png\"><img src=\"/cache/swap.png\">", rewritten);
+    }
+
+    @Test
+    void rewriteHandlesSeveralReferencesInOneTag() {
+        // srcset is read after src, scan() must still return them in document order
+        String html = "<img srcset=\"a.png 1x, b.png 2x\" src=\"c.png\" style=\"background:url(d.png)\">";
+        List<ResourceReference> references = scanner.scan(html);
+
+        String rewritten = HtmlResourceScanner.rewrite(html, references, reference -> reference.getUrl().toUpperCase());
+
+        assertEquals("<img srcset=\"A.PNG 1x, B.PNG 2x\" src=\"C.PNG\" style=\"background:url(D.PNG)\">", rewritten);
+    }
+
+    @Test
+    void scanCssFindsReferencesInRegion() {
+        String css = "body{} @import url(\"base.css\"); .x { background: url(img/x.png) } .f { src: url(f.ttf) }";
+        List<ResourceReference> references = new ArrayList<>();
+
+        scanner.scanCss(css, 0, css.length(), references);
+
+        assertEquals(List.of("base.css", "img/x.png", "f.ttf"), urls(references));
+        assertEquals(List.of("import", "bg", "font"), types(references));
+        assertOffsets(css, references);
+    }
+
+    private static void assertOffsets(String text, List<ResourceReference> references) {
+        int previous = -1;
+        for (ResourceReference reference : references) {
+            assertEquals(reference.getUrl(), text.substring(reference.getStart(), reference.getEnd()));
+            assertTrue(reference.getStart() > previous, "references out of document order");
+            previous = reference.getStart();
+        }
+    }
+
+    private static List<String> urls(List<ResourceReference> references) {
+        return references.stream().map(ResourceReference::getUrl).collect(Collectors.toList());
+    }
+
+    private static List<String> types(List<ResourceReference> references) {
+        return references.stream().map(ResourceReference::getType).collect(Collectors.toList());
+    }
+
+    private static List<String> folders(List<ResourceReference> references) {
+        return references.stream().map(ResourceReference::getFolder).collect(Collectors.toList());
+    }
+
+    private static List<ResourcePriority> priorities(List<ResourceReference> references) {
+        return references.stream().map(ResourceReference::getPriority).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,159 @@
+package org.example.webbrowser.fetch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private static final String KEY = "https://example.com/style.css";
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void waiterGetsResultOfRunningCall() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        Future<String> leader = callers.submit(() -> flight.execute(KEY, () -> {
+            runs.incrementAndGet();
+            await(release);
+            return "body";
+        }, CancellationToken.NONE));
+        waitUntilRunning(flight);
+
+        Future<String> waiter = callers.submit(() -> flight.execute(KEY, () -> {
+            runs.incrementAndGet();
+            return "second body";
+        }, CancellationToken.NONE));
+        waitUntilShared(flight, 1);
+        release.countDown();
+
+        assertEquals("body", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("body", waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(1, flight.getStartedCount());
+        assertFalse(flight.isRunning(KEY));
+    }
+
+    @Test
+    void waiterRunsCallAgainWhenLeaderIsCancelled() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CancellationToken leaderToken = CancellationToken.withTimeout(TimeUnit.MINUTES.toMillis(5));
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = callers.submit(() -> flight.execute(KEY, () -> {
+            await(release);
+            leaderToken.throwIfCancelled();
+            return "leader body";
+        }, leaderToken));
+        waitUntilRunning(flight);
+
+        Future<String> waiter = callers.submit(() -> flight.execute(KEY, () -> "waiter body", CancellationToken.NONE));
+        waitUntilShared(flight, 1);
+        leaderToken.cancel("navigated away");
+        release.countDown();
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(InterruptedIOException.class, leaderError.getCause());
+        assertEquals("waiter body", waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(2, flight.getStartedCount());
+    }
+
+    @Test
+    void waiterSharesFailureOfLeader() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        IOException failure = new IOException("HTTP 500");
+
+        Future<String> leader = callers.submit(() -> flight.execute(KEY, () -> {
+            await(release);
+            throw failure;
+        }, CancellationToken.NONE));
+        waitUntilRunning(flight);
+
+        Future<String> waiter = callers.submit(() -> flight.execute(KEY, () -> "waiter body", CancellationToken.NONE));
+        waitUntilShared(flight, 1);
+        release.countDown();
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(1, flight.getStartedCount());
+    }
+
+    @Test
+    void cancelledWaiterStopsWaitingWithoutStoppingLeader() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CancellationToken waiterToken = CancellationToken.withTimeout(TimeUnit.MINUTES.toMillis(5));
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = callers.submit(() -> flight.execute(KEY, () -> {
+            await(release);
+            return "body";
+        }, CancellationToken.NONE));
+        waitUntilRunning(flight);
+
+        Future<String> waiter = callers.submit(() -> flight.execute(KEY, () -> "waiter body", waiterToken));
+        waitUntilShared(flight, 1);
+        waiterToken.cancel("tab closed");
+
+        ExecutionException waiterError = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(InterruptedIOException.class, waiterError.getCause());
+        assertTrue(flight.isRunning(KEY));
+
+        release.countDown();
+        assertEquals("body", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(1, flight.getStartedCount());
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IOException("Test call was never released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static void waitUntilRunning(SingleFlight<?> flight) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!flight.isRunning(KEY)) {
+            assertTrue(System.nanoTime() < deadline, "call did not start");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void waitUntilShared(SingleFlight<?> flight, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.getSharedCount() < count) {
+            assertTrue(System.nanoTime() < deadline, "waiter did not join the call");
+            Thread.sleep(1);
+        }
+        // Joined the call, give it a moment to block on the result
+        Thread.sleep(50);
+    }
+}